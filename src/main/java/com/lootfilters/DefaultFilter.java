@@ -2,6 +2,7 @@ package com.lootfilters;
 
 import com.lootfilters.lang.Sources;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -52,8 +53,10 @@ public enum DefaultFilter {
 		}
 
 		try {
-			var src = Sources.loadScriptResource(DefaultFilter.class, filter.filename, true);
-			return LootFilter.fromSource(name, src);
+			var src = Sources.loadScriptResource(DefaultFilter.class, filter.filename);
+			return FilterCache.load(name, src);
+		} catch (CancellationException e) {
+			throw e; // superseded by a newer load, not a failure
 		} catch (Exception e) {
 			log.error("load {}", name, e);
 			return LootFilter.Nop;
@@ -64,6 +67,6 @@ public enum DefaultFilter {
 		return name
 			.toLowerCase()
 			.replace(" ", "_")
-			.replaceAll("[^a-z]", "") + ".rs2f.gz";
+			.replaceAll("[^a-z]", "") + ".rs2f";
 	}
 }
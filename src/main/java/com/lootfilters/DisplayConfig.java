@@ -13,13 +13,26 @@ import net.runelite.client.ui.FontManager;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.lootfilters.FilterCache.readBoolean;
+import static com.lootfilters.FilterCache.readColor;
+import static com.lootfilters.FilterCache.readIcon;
+import static com.lootfilters.FilterCache.readNullableEnum;
+import static com.lootfilters.FilterCache.readSound;
+import static com.lootfilters.FilterCache.writeBoolean;
+import static com.lootfilters.FilterCache.writeColor;
+import static com.lootfilters.FilterCache.writeIcon;
+import static com.lootfilters.FilterCache.writeSound;
+
 @Getter
 @Builder(toBuilder = true)
 @AllArgsConstructor
-@EqualsAndHashCode
+@EqualsAndHashCode(cacheStrategy = EqualsAndHashCode.CacheStrategy.LAZY)
 @ToString
 public class DisplayConfig {
     public static final Color DEFAULT_MENU_TEXT_COLOR = Color.decode("#ff9040");
@@ -134,27 +147,89 @@ public class DisplayConfig {
 
     public DisplayConfig merge(DisplayConfig other) {
         var b = toBuilder();
-        if (other.textColor != null) { b.textColor(other.textColor); }
-        if (other.backgroundColor != null) { b.backgroundColor(other.backgroundColor); }
-        if (other.borderColor != null) { b.borderColor(other.borderColor); }
-        if (other.hidden != null) { b.hidden(other.hidden); }
-        if (other.showLootbeam != null) { b.showLootbeam(other.showLootbeam); }
-        if (other.showValue != null) { b.showValue(other.showValue); }
-        if (other.compact != null) { b.compact(other.compact); }
-        if (other.showDespawn != null) { b.showDespawn(other.showDespawn); }
-        if (other.notify != null) { b.notify(other.notify); }
-        if (other.textAccent != null) { b.textAccent(other.textAccent); }
-        if (other.textAccentColor != null) { b.textAccentColor(other.textAccentColor); }
-        if (other.lootbeamColor != null) { b.lootbeamColor(other.lootbeamColor); }
-        if (other.fontType != null) { b.fontType(other.fontType); }
-        if (other.menuTextColor != null) { b.menuTextColor(other.menuTextColor); }
-        if (other.highlightTile != null) { b.highlightTile(other.highlightTile); }
-        if (other.tileStrokeColor != null) { b.tileStrokeColor(other.tileStrokeColor); }
-        if (other.tileFillColor != null) { b.tileFillColor(other.tileFillColor); }
-        if (other.hideOverlay != null) { b.hideOverlay(other.hideOverlay); }
-        if (other.sound != null) { b.sound(other.sound); }
-        if (other.menuSort != null) { b.menuSort(other.menuSort); }
-        if (other.icon != null) { b.icon(other.icon); }
+        other.applyTo(b);
+        return b.build();
+    }
+
+    /**
+     * Overwrites every field on the given builder that is set on this display. Used to fold a chain of matched rules
+     * into a single builder without allocating an intermediate DisplayConfig per rule.
+     */
+    public void applyTo(DisplayConfigBuilder b) {
+        if (textColor != null) { b.textColor(textColor); }
+        if (backgroundColor != null) { b.backgroundColor(backgroundColor); }
+        if (borderColor != null) { b.borderColor(borderColor); }
+        if (hidden != null) { b.hidden(hidden); }
+        if (showLootbeam != null) { b.showLootbeam(showLootbeam); }
+        if (showValue != null) { b.showValue(showValue); }
+        if (compact != null) { b.compact(compact); }
+        if (showDespawn != null) { b.showDespawn(showDespawn); }
+        if (notify != null) { b.notify(notify); }
+        if (textAccent != null) { b.textAccent(textAccent); }
+        if (textAccentColor != null) { b.textAccentColor(textAccentColor); }
+        if (lootbeamColor != null) { b.lootbeamColor(lootbeamColor); }
+        if (fontType != null) { b.fontType(fontType); }
+        if (menuTextColor != null) { b.menuTextColor(menuTextColor); }
+        if (highlightTile != null) { b.highlightTile(highlightTile); }
+        if (tileStrokeColor != null) { b.tileStrokeColor(tileStrokeColor); }
+        if (tileFillColor != null) { b.tileFillColor(tileFillColor); }
+        if (hideOverlay != null) { b.hideOverlay(hideOverlay); }
+        if (sound != null) { b.sound(sound); }
+        if (menuSort != null) { b.menuSort(menuSort); }
+        if (icon != null) { b.icon(icon); }
+    }
+
+    // evalTrace is only populated on match results, never on rule displays, so it isn't stored
+    void writeTo(DataOutputStream out) throws IOException {
+        writeColor(out, textColor);
+        writeColor(out, backgroundColor);
+        writeColor(out, borderColor);
+        writeBoolean(out, hidden);
+        writeBoolean(out, showLootbeam);
+        writeBoolean(out, showValue);
+        writeBoolean(out, compact);
+        writeBoolean(out, showDespawn);
+        writeBoolean(out, notify);
+        out.writeByte(textAccent != null ? textAccent.ordinal() : -1);
+        writeColor(out, textAccentColor);
+        writeColor(out, lootbeamColor);
+        out.writeByte(fontType != null ? fontType.ordinal() : -1);
+        writeColor(out, menuTextColor);
+        writeBoolean(out, highlightTile);
+        writeColor(out, tileStrokeColor);
+        writeColor(out, tileFillColor);
+        writeBoolean(out, hideOverlay);
+        writeSound(out, sound);
+        out.writeBoolean(menuSort != null);
+        if (menuSort != null) {
+            out.writeInt(menuSort);
+        }
+        writeIcon(out, icon);
+    }
+
+    static DisplayConfig readFrom(DataInputStream in) throws IOException {
+        var b = builder();
+        b.textColor(readColor(in));
+        b.backgroundColor(readColor(in));
+        b.borderColor(readColor(in));
+        b.hidden(readBoolean(in));
+        b.showLootbeam(readBoolean(in));
+        b.showValue(readBoolean(in));
+        b.compact(readBoolean(in));
+        b.showDespawn(readBoolean(in));
+        b.notify(readBoolean(in));
+        b.textAccent(readNullableEnum(in, TextAccent.values()));
+        b.textAccentColor(readColor(in));
+        b.lootbeamColor(readColor(in));
+        b.fontType(readNullableEnum(in, FontType.values()));
+        b.menuTextColor(readColor(in));
+        b.highlightTile(readBoolean(in));
+        b.tileStrokeColor(readColor(in));
+        b.tileFillColor(readColor(in));
+        b.hideOverlay(readBoolean(in));
+        b.sound(readSound(in));
+        b.menuSort(in.readBoolean() ? in.readInt() : null);
+        b.icon(readIcon(in));
         return b.build();
     }
 }
@@ -0,0 +1,463 @@
+package com.lootfilters;
+
+import com.lootfilters.ast.AndCondition;
+import com.lootfilters.ast.Condition;
+import com.lootfilters.ast.NotCondition;
+import com.lootfilters.ast.OrCondition;
+import com.lootfilters.ast.leaf.AccountTypeCondition;
+import com.lootfilters.ast.leaf.AreaCondition;
+import com.lootfilters.ast.leaf.ConstCondition;
+import com.lootfilters.ast.leaf.ItemIdCondition;
+import com.lootfilters.ast.leaf.ItemNameCondition;
+import com.lootfilters.ast.leaf.ItemNotedCondition;
+import com.lootfilters.ast.leaf.ItemOwnershipCondition;
+import com.lootfilters.ast.leaf.ItemQuantityCondition;
+import com.lootfilters.ast.leaf.ItemStackableCondition;
+import com.lootfilters.ast.leaf.ItemTradeableCondition;
+import com.lootfilters.ast.leaf.ItemValueCondition;
+import com.lootfilters.lang.CompileException;
+import com.lootfilters.lang.Lexer;
+import com.lootfilters.lang.Optimizer;
+import com.lootfilters.lang.Parser;
+import com.lootfilters.lang.Preprocessor;
+import com.lootfilters.lang.Sources;
+import com.lootfilters.lang.Token;
+import com.lootfilters.lang.TokenStream;
+import com.lootfilters.model.BufferedImageProvider;
+import com.lootfilters.model.Comparator;
+import com.lootfilters.model.Ownership;
+import com.lootfilters.model.SoundProvider;
+import com.lootfilters.model.ValueType;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.coords.WorldPoint;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static com.lootfilters.LootFiltersPlugin.CACHE_DIRECTORY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * FilterCache persists compiled filters to disk so that loading an unchanged filter skips the lexer, preprocessor and
+ * parser entirely. Entries are keyed by a hash of the filter source together with the preamble, the cache format
+ * version and a fingerprint of the compiler build, so any change to those simply misses. Only the most recent entry for
+ * each filename is kept.
+ */
+@Slf4j
+public final class FilterCache {
+    // bump whenever the serialized format or the meaning of compiled conditions changes
+    static final int FORMAT_VERSION = 1;
+
+    // classes whose bytecode determines what a compiled filter looks like or how it is serialized, so that an entry
+    // written by any other plugin build misses even if nobody remembered to bump FORMAT_VERSION
+    private static final Class<?>[] FINGERPRINTED_CLASSES = {
+            Lexer.class, Token.class, TokenStream.class, Preprocessor.class, Parser.class, Optimizer.class,
+            LootFilter.class, FilterRule.class, DisplayConfig.class, FilterCache.class,
+            AndCondition.class, OrCondition.class, NotCondition.class, ConstCondition.class, ItemIdCondition.class,
+            ItemNameCondition.class, ItemNotedCondition.class, ItemStackableCondition.class,
+            ItemTradeableCondition.class, ItemOwnershipCondition.class, ItemQuantityCondition.class,
+            ItemValueCondition.class, AreaCondition.class, AccountTypeCondition.class,
+            SoundProvider.SoundEffect.class, SoundProvider.File.class, BufferedImageProvider.Sprite.class,
+            BufferedImageProvider.Item.class, BufferedImageProvider.File.class,
+            BufferedImageProvider.CurrentItem.class,
+    };
+
+    // null if any of the classes couldn't be read, in which case nothing is cached
+    private static final String BUILD_FINGERPRINT = fingerprint();
+
+    private FilterCache() {}
+
+    public static LootFilter load(String filename, String source) throws CompileException {
+        return load(filename, source, LootFilter::fromSource);
+    }
+
+    /**
+     * @param compiler Compiles the filter on a cache miss.
+     */
+    public static LootFilter load(String filename, String source, BiFunction<String, String, LootFilter> compiler)
+            throws CompileException {
+        if (BUILD_FINGERPRINT == null) {
+            return compiler.apply(filename, source);
+        }
+
+        var prefix = hash(filename).substring(0, 16);
+        var key = FORMAT_VERSION + "\0" + BUILD_FINGERPRINT + "\0" + Sources.getPreamble() + "\0" + filename + "\0" + source;
+        var file = new File(CACHE_DIRECTORY, prefix + "-" + hash(key) + ".bin");
+        if (file.exists()) {
+            try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                return readFilter(in);
+            } catch (Exception e) {
+                log.warn("read cached filter {}, recompiling", filename, e);
+            }
+        }
+
+        var filter = compiler.apply(filename, source);
+        try {
+            write(file, prefix, filter);
+        } catch (Exception e) {
+            log.warn("write cached filter {}", filename, e);
+        }
+        return filter;
+    }
+
+    // the entry is written to a temp file and moved into place so that a concurrent or interrupted write can never
+    // leave a partial entry under the final name
+    private static void write(File file, String prefix, LootFilter filter) throws IOException {
+        if (!CACHE_DIRECTORY.isDirectory()) {
+            return;
+        }
+
+        var tmp = File.createTempFile(prefix + ".", ".tmp", CACHE_DIRECTORY);
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                writeFilter(out, filter);
+            }
+            Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            tmp.delete(); // no-op once moved
+        }
+
+        var stale = CACHE_DIRECTORY.listFiles((dir, name) ->
+                name.startsWith(prefix + "-") && name.endsWith(".bin") && !name.equals(file.getName()));
+        if (stale != null) {
+            for (var it : stale) {
+                it.delete();
+            }
+        }
+    }
+
+    private static String hash(String str) {
+        return toHex(sha256().digest(str.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String fingerprint() {
+        var digest = sha256();
+        for (var clazz : FINGERPRINTED_CLASSES) {
+            var resource = clazz.getName().substring(clazz.getName().lastIndexOf('.') + 1) + ".class";
+            try (var in = clazz.getResourceAsStream(resource)) {
+                if (in == null) {
+                    log.warn("missing class file {}, filter cache disabled", resource);
+                    return null;
+                }
+                digest.update(in.readAllBytes());
+            } catch (IOException e) {
+                log.warn("read class file {}, filter cache disabled", resource, e);
+                return null;
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE is required to ship SHA-256
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        var hex = new StringBuilder(bytes.length * 2);
+        for (var b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    static void writeFilter(DataOutputStream out, LootFilter filter) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        writeString(out, filter.getName());
+        writeString(out, filter.getFilename());
+        writeString(out, filter.getDescription());
+        out.writeInt(filter.getRules().size());
+        for (var rule : filter.getRules()) {
+            writeCondition(out, rule.getCond());
+            rule.getDisplay().writeTo(out);
+            out.writeBoolean(rule.isTerminal());
+            out.writeInt(rule.getSourceLine());
+        }
+    }
+
+    static LootFilter readFilter(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new FormatException("cache format version mismatch");
+        }
+
+        var builder = LootFilter.builder()
+                .setName(readString(in))
+                .setFilename(readString(in))
+                .setDescription(readString(in));
+        var count = in.readInt();
+        for (var i = 0; i < count; ++i) {
+            builder.addRule(new FilterRule(readCondition(in), DisplayConfig.readFrom(in), in.readBoolean(), in.readInt()));
+        }
+        return builder.build();
+    }
+
+    private static void writeCondition(DataOutputStream out, Condition cond) throws IOException {
+        if (cond instanceof AndCondition) {
+            out.writeByte(0);
+            writeConditions(out, ((AndCondition) cond).getRules());
+        } else if (cond instanceof OrCondition) {
+            out.writeByte(1);
+            writeConditions(out, ((OrCondition) cond).getRules());
+        } else if (cond instanceof NotCondition) {
+            out.writeByte(2);
+            writeCondition(out, ((NotCondition) cond).getInner());
+        } else if (cond instanceof ConstCondition) {
+            out.writeByte(3);
+            out.writeBoolean(((ConstCondition) cond).isTarget());
+        } else if (cond instanceof ItemIdCondition) {
+            var ids = ((ItemIdCondition) cond).getIds();
+            out.writeByte(4);
+            out.writeInt(ids.size());
+            for (var id : ids) {
+                out.writeInt(id);
+            }
+        } else if (cond instanceof ItemNameCondition) {
+            var names = ((ItemNameCondition) cond).getNames();
+            out.writeByte(5);
+            out.writeInt(names.size());
+            for (var name : names) {
+                out.writeUTF(name);
+            }
+        } else if (cond instanceof ItemNotedCondition) {
+            out.writeByte(6);
+            out.writeBoolean(((ItemNotedCondition) cond).isTarget());
+        } else if (cond instanceof ItemStackableCondition) {
+            out.writeByte(7);
+            out.writeBoolean(((ItemStackableCondition) cond).isTarget());
+        } else if (cond instanceof ItemTradeableCondition) {
+            out.writeByte(8);
+            out.writeBoolean(((ItemTradeableCondition) cond).isTarget());
+        } else if (cond instanceof ItemOwnershipCondition) {
+            out.writeByte(9);
+            out.writeByte(((ItemOwnershipCondition) cond).getOwnership().ordinal());
+        } else if (cond instanceof ItemQuantityCondition) {
+            var quantity = (ItemQuantityCondition) cond;
+            out.writeByte(10);
+            out.writeInt(quantity.getRhs());
+            out.writeByte(quantity.getCmp().ordinal());
+        } else if (cond instanceof ItemValueCondition) {
+            var value = (ItemValueCondition) cond;
+            out.writeByte(11);
+            out.writeInt(value.getRhs());
+            out.writeByte(value.getCmp().ordinal());
+            out.writeByte(value.getValueType().ordinal());
+        } else if (cond instanceof AreaCondition) {
+            var area = (AreaCondition) cond;
+            out.writeByte(12);
+            writePoint(out, area.getP0());
+            writePoint(out, area.getP1());
+        } else if (cond instanceof AccountTypeCondition) {
+            out.writeByte(13);
+            out.writeInt(((AccountTypeCondition) cond).getType());
+        } else {
+            throw new IOException("unsupported condition " + cond.getClass().getSimpleName());
+        }
+    }
+
+    private static void writeConditions(DataOutputStream out, List<Condition> conds) throws IOException {
+        out.writeInt(conds.size());
+        for (var cond : conds) {
+            writeCondition(out, cond);
+        }
+    }
+
+    private static Condition readCondition(DataInputStream in) throws IOException {
+        var tag = in.readByte();
+        switch (tag) {
+            case 0: return new AndCondition(readConditions(in));
+            case 1: return new OrCondition(readConditions(in));
+            case 2: return new NotCondition(readCondition(in));
+            case 3: return new ConstCondition(in.readBoolean());
+            case 4: {
+                var ids = new ArrayList<Integer>();
+                for (var i = in.readInt(); i > 0; --i) {
+                    ids.add(in.readInt());
+                }
+                return new ItemIdCondition(ids);
+            }
+            case 5: {
+                var names = new ArrayList<String>();
+                for (var i = in.readInt(); i > 0; --i) {
+                    names.add(in.readUTF());
+                }
+                return new ItemNameCondition(names);
+            }
+            case 6: return new ItemNotedCondition(in.readBoolean());
+            case 7: return new ItemStackableCondition(in.readBoolean());
+            case 8: return new ItemTradeableCondition(in.readBoolean());
+            case 9: return new ItemOwnershipCondition(readEnum(in, Ownership.values()).ordinal());
+            case 10: return new ItemQuantityCondition(in.readInt(), readEnum(in, Comparator.values()));
+            case 11: return new ItemValueCondition(in.readInt(), readEnum(in, Comparator.values()), readEnum(in, ValueType.values()));
+            case 12: return new AreaCondition(readPoint(in), readPoint(in));
+            case 13: return new AccountTypeCondition(in.readInt());
+            default: throw new FormatException("unrecognized condition tag " + tag);
+        }
+    }
+
+    private static List<Condition> readConditions(DataInputStream in) throws IOException {
+        var conds = new ArrayList<Condition>();
+        for (var i = in.readInt(); i > 0; --i) {
+            conds.add(readCondition(in));
+        }
+        return conds;
+    }
+
+    static void writeSound(DataOutputStream out, SoundProvider sound) throws IOException {
+        if (sound == null) {
+            out.writeByte(0);
+        } else if (sound instanceof SoundProvider.SoundEffect) {
+            out.writeByte(1);
+            out.writeInt(((SoundProvider.SoundEffect) sound).getId());
+        } else if (sound instanceof SoundProvider.File) {
+            out.writeByte(2);
+            out.writeUTF(((SoundProvider.File) sound).getFilename());
+        } else {
+            throw new IOException("unsupported sound " + sound.getClass().getSimpleName());
+        }
+    }
+
+    static SoundProvider readSound(DataInputStream in) throws IOException {
+        var tag = in.readByte();
+        switch (tag) {
+            case 0: return null;
+            case 1: return new SoundProvider.SoundEffect(in.readInt());
+            case 2: return new SoundProvider.File(in.readUTF());
+            default: throw new FormatException("unrecognized sound tag " + tag);
+        }
+    }
+
+    static void writeIcon(DataOutputStream out, BufferedImageProvider icon) throws IOException {
+        if (icon == null) {
+            out.writeByte(0);
+        } else if (icon instanceof BufferedImageProvider.Sprite) {
+            var sprite = (BufferedImageProvider.Sprite) icon;
+            out.writeByte(1);
+            out.writeInt(sprite.getSpriteId());
+            out.writeInt(sprite.getIndex());
+        } else if (icon instanceof BufferedImageProvider.Item) {
+            out.writeByte(2);
+            out.writeInt(((BufferedImageProvider.Item) icon).getItemId());
+        } else if (icon instanceof BufferedImageProvider.File) {
+            out.writeByte(3);
+            out.writeUTF(((BufferedImageProvider.File) icon).getFilename());
+        } else if (icon instanceof BufferedImageProvider.CurrentItem) {
+            out.writeByte(4);
+        } else {
+            throw new IOException("unsupported icon " + icon.getClass().getSimpleName());
+        }
+    }
+
+    static BufferedImageProvider readIcon(DataInputStream in) throws IOException {
+        var tag = in.readByte();
+        switch (tag) {
+            case 0: return null;
+            case 1: return new BufferedImageProvider.Sprite(in.readInt(), in.readInt());
+            case 2: return new BufferedImageProvider.Item(in.readInt());
+            case 3: return new BufferedImageProvider.File(in.readUTF());
+            case 4: return new BufferedImageProvider.CurrentItem();
+            default: throw new FormatException("unrecognized icon tag " + tag);
+        }
+    }
+
+    private static void writePoint(DataOutputStream out, WorldPoint point) throws IOException {
+        out.writeInt(point.getX());
+        out.writeInt(point.getY());
+        out.writeInt(point.getPlane());
+    }
+
+    private static WorldPoint readPoint(DataInputStream in) throws IOException {
+        return new WorldPoint(in.readInt(), in.readInt(), in.readInt());
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInputStream in, E[] values) throws IOException {
+        var ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new FormatException("ordinal " + ordinal + " out of range for "
+                    + values.getClass().getComponentType().getSimpleName());
+        }
+        return values[ordinal];
+    }
+
+    // as readEnum, except that a negative ordinal decodes to null
+    static <E extends Enum<E>> E readNullableEnum(DataInputStream in, E[] values) throws IOException {
+        var ordinal = in.readByte();
+        if (ordinal < 0) {
+            return null;
+        }
+        if (ordinal >= values.length) {
+            throw new FormatException("ordinal " + ordinal + " out of range for "
+                    + values.getClass().getComponentType().getSimpleName());
+        }
+        return values[ordinal];
+    }
+
+    static void writeColor(DataOutputStream out, Color color) throws IOException {
+        out.writeBoolean(color != null);
+        if (color != null) {
+            out.writeInt(color.getRGB());
+        }
+    }
+
+    static Color readColor(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new Color(in.readInt(), true) : null;
+    }
+
+    static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        out.writeByte(value == null ? -1 : value ? 1 : 0);
+    }
+
+    static Boolean readBoolean(DataInputStream in) throws IOException {
+        var value = in.readByte();
+        return value < 0 ? null : value == 1;
+    }
+
+    // writeUTF caps out at 64k, which a long description could plausibly exceed
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        var bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Thrown when a cache entry doesn't decode to a valid filter, e.g. an unknown tag or an out-of-range enum ordinal.
+     */
+    static final class FormatException extends IOException {
+        FormatException(String message) {
+            super(message);
+        }
+    }
+}
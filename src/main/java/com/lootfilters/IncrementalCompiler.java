@@ -0,0 +1,198 @@
+package com.lootfilters;
+
+import com.lootfilters.lang.CompileException;
+import com.lootfilters.lang.Optimizer;
+import com.lootfilters.lang.Parser;
+import com.lootfilters.lang.Preprocessor;
+import com.lootfilters.lang.Sources;
+import com.lootfilters.lang.Token;
+import com.lootfilters.lang.TokenStream;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+
+/**
+ * IncrementalCompiler compiles a filter while reusing the parsed rules of every top-level block that hasn't changed
+ * since the previous compile. After #defines are stripped out, the source is split into blocks at every closing brace
+ * that returns to the top level, so each meta, if, apply or rule block (along with any macro invocations leading up to
+ * it) is its own unit. A block is fingerprinted by its tokens, their line numbers relative to the start of the block,
+ * and every define it expands through, and only blocks with a new fingerprint are expanded and parsed.
+ * <p>
+ * The parser never looks past the end of a top-level block, so parsing blocks separately gives the same rules as
+ * parsing the whole filter, and a compile error in a block is the same error a full compile would raise. In the odd
+ * case where a block doesn't stand on its own (a macro that expands to an unbalanced brace, say) the whole filter is
+ * compiled from scratch instead.
+ */
+@Slf4j
+public class IncrementalCompiler {
+    private Map<String, Block> blocks = Map.of();
+
+    public synchronized LootFilter compile(String filename, String source) throws CompileException {
+        var sources = new LinkedHashMap<String, String>();
+        sources.put("preamble", Sources.getPreamble());
+        sources.put(filename, source);
+
+        var preprocessor = new Preprocessor(TokenStream.concat(LootFilter.tokenizeAll(sources)));
+        LootFilter.checkCancelled();
+        var stripped = preprocessor.collectDefines();
+
+        var nextBlocks = new HashMap<String, Block>();
+        var builder = LootFilter.builder().setFilename(filename);
+        String name = null;
+        var reused = 0;
+        try {
+            for (var tokens : split(stripped)) {
+                LootFilter.checkCancelled();
+                var firstLine = firstLine(tokens);
+                if (firstLine == -1) {
+                    continue; // nothing but whitespace and comments
+                }
+
+                var fingerprint = fingerprint(tokens, firstLine) + preprocessor.describeDefinesUsedBy(tokens);
+                var block = nextBlocks.get(fingerprint);
+                if (block == null) {
+                    block = blocks.get(fingerprint);
+                    if (block != null) {
+                        ++reused;
+                    } else {
+                        var expanded = preprocessor.expand(tokens);
+                        if (!isBalanced(expanded)) {
+                            log.debug("block at line {} of {} doesn't stand on its own, compiling in full",
+                                    firstLine, filename);
+                            blocks = Map.of();
+                            return LootFilter.fromSource(filename, source);
+                        }
+
+                        var parsed = new Parser(new TokenStream(expanded)).parseUnbuilt();
+                        block = new Block(firstLine, parsed.getName(), parsed.getDescription(),
+                                Optimizer.optimize(parsed.getRules()));
+                    }
+                    nextBlocks.put(fingerprint, block);
+                }
+                if (block.name != null) { // last meta block wins, as it would in the parser
+                    name = block.name;
+                }
+                if (block.description != null) {
+                    builder.setDescription(block.description);
+                }
+                block.appendTo(builder, firstLine);
+            }
+        } catch (CancellationException | CompileException e) {
+            // a superseded compile isn't a failure, and a self-contained block fails exactly as the whole filter
+            // would, so either way the previous blocks are still good for next time
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("incremental compile of {} failed unexpectedly, compiling in full", filename, e);
+            blocks = Map.of();
+            return LootFilter.fromSource(filename, source);
+        }
+
+        log.debug("compiled {}, reused {}/{} blocks", filename, reused, nextBlocks.size());
+        blocks = nextBlocks;
+        return builder
+                .setName(name == null || name.isBlank() ? filename : name)
+                .build();
+    }
+
+    private static List<List<Token>> split(List<Token> tokens) {
+        var split = new ArrayList<List<Token>>();
+        var current = new ArrayList<Token>();
+        var braceDepth = 0;
+        var parenDepth = 0;
+        for (var token : tokens) {
+            current.add(token);
+            if (token.is(Token.Type.EXPR_START)) {
+                ++parenDepth;
+            } else if (token.is(Token.Type.EXPR_END)) {
+                --parenDepth;
+            } else if (token.is(Token.Type.BLOCK_START)) {
+                ++braceDepth;
+            } else if (token.is(Token.Type.BLOCK_END)) {
+                --braceDepth;
+                if (braceDepth == 0 && parenDepth == 0) {
+                    split.add(current);
+                    current = new ArrayList<>();
+                }
+            }
+        }
+        split.add(current);
+        return split;
+    }
+
+    // whether the parser could only ever see these tokens as whole top-level blocks
+    private static boolean isBalanced(List<Token> tokens) {
+        var braceDepth = 0;
+        var parenDepth = 0;
+        for (var token : tokens) {
+            if (token.is(Token.Type.EXPR_START)) {
+                ++parenDepth;
+            } else if (token.is(Token.Type.EXPR_END)) {
+                --parenDepth;
+            } else if (token.is(Token.Type.BLOCK_START)) {
+                ++braceDepth;
+            } else if (token.is(Token.Type.BLOCK_END)) {
+                --braceDepth;
+            }
+            if (braceDepth < 0 || parenDepth < 0) {
+                return false;
+            }
+        }
+        return braceDepth == 0 && parenDepth == 0;
+    }
+
+    private static int firstLine(List<Token> tokens) {
+        for (var token : tokens) {
+            if (token.isSemantic()) {
+                return token.getLocation().getLineNumber();
+            }
+        }
+        return -1;
+    }
+
+    // whitespace is left out, it can't change how a block expands or parses
+    private static String fingerprint(List<Token> tokens, int firstLine) {
+        var fingerprint = new StringBuilder();
+        String sourceName = null;
+        for (var token : tokens) {
+            if (!token.isSemantic()) {
+                continue;
+            }
+
+            var location = token.getLocation();
+            if (!Objects.equals(sourceName, location.getSourceName())) {
+                sourceName = location.getSourceName();
+                fingerprint.append('@').append(sourceName).append('\n');
+            }
+            fingerprint.append(location.getLineNumber() - firstLine).append(' ')
+                    .append(token.getType()).append(' ')
+                    .append(token.getValue()).append('\n');
+        }
+        return fingerprint.toString();
+    }
+
+    // only the filter as a whole is ever built, so that its conditions are compiled and indexed once
+    @AllArgsConstructor
+    private static class Block {
+        final int firstLine;
+        final String name;
+        final String description;
+        final List<FilterRule> rules;
+
+        // every rule in a block takes its source line from a token in that block, so moving the block shifts them all
+        void appendTo(LootFilter.Builder builder, int atLine) {
+            var shift = atLine - firstLine;
+            for (var rule : rules) {
+                builder.addRule(shift == 0
+                        ? rule
+                        : new FilterRule(rule.getCond(), rule.getDisplay(), rule.isTerminal(), rule.getSourceLine() + shift));
+            }
+        }
+    }
+}
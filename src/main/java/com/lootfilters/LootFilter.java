@@ -1,13 +1,16 @@
 package com.lootfilters;
 
+import com.lootfilters.ast.CompiledCondition;
 import com.lootfilters.lang.CompileException;
 import com.lootfilters.lang.Lexer;
+import com.lootfilters.lang.Optimizer;
 import com.lootfilters.lang.Parser;
 import com.lootfilters.lang.Preprocessor;
 import com.lootfilters.lang.Sources;
 import com.lootfilters.lang.TokenStream;
 import com.lootfilters.lang.TokenizeException;
 import com.lootfilters.model.PluginTileItem;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
@@ -19,26 +22,64 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
-import static com.lootfilters.util.TextUtil.normalizeCrlf;
-
 @Getter
 @EqualsAndHashCode
 @ToString
 public class LootFilter {
     public static final LootFilter Nop = LootFilter.builder().build();
 
+    // base display that matched rules are applied on top of, evalTrace is always replaced
+    private static final DisplayConfig DEFAULT_DISPLAY = new DisplayConfig(Color.WHITE);
+
+    // lexing is cheap enough that a couple of threads covers the preamble plus any realistic number of sources
+    private static final ExecutorService LEXER_EXECUTOR = Executors.newFixedThreadPool(2, runnable -> {
+        var thread = new Thread(runnable, "loot-filters-lexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ThreadLocal<BooleanSupplier> SUPERSEDED = ThreadLocal.withInitial(() -> () -> false);
+
     private final String name;
     private final String filename;
     private final String description;
     private final List<FilterRule> rules;
 
+    // rule conditions lowered for evaluation, index-aligned with rules
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final CompiledCondition[] conditions;
+
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final RuleIndex index;
+
+    // canonical instances of every display this filter has produced, so that equal displays are the same object
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Map<DisplayConfig, DisplayConfig> displays = new ConcurrentHashMap<>();
+
     private LootFilter(Builder builder) {
         name = builder.name;
         filename = builder.filename;
         description = builder.description;
         rules = builder.rules;
+        conditions = rules.stream()
+                .map(it -> CompiledCondition.compile(it.getCond()))
+                .toArray(CompiledCondition[]::new);
+        index = new RuleIndex(rules);
     }
 
     public static LootFilter fromSourcesWithPreamble(Map<String, String> sources) throws CompileException {
@@ -54,28 +95,69 @@ public class LootFilter {
     }
 
 	public static LootFilter fromSources(LinkedHashMap<String, String> sources) throws CompileException {
-        var combinedStream = sources
-                .entrySet().stream()
+        var combinedStream = TokenStream.concat(tokenizeAll(sources));
+        checkCancelled();
+
+        var postproc = new Preprocessor(combinedStream).preprocess();
+        checkCancelled();
+        var filter = new Parser(postproc).parse();
+        checkCancelled();
+        return new Optimizer(filter).optimize();
+    }
+
+    // A compile that's been superseded gives up at the next stage boundary. The check is set per thread by whoever
+    // started the compile, rather than interrupting it, since an interrupt would also break any file I/O in progress.
+    static void checkCancelled() {
+        if (SUPERSEDED.get().getAsBoolean()) {
+            throw new CancellationException("compile superseded");
+        }
+    }
+
+    static void setSupersededCheck(BooleanSupplier superseded) {
+        SUPERSEDED.set(superseded);
+    }
+
+    static void clearSupersededCheck() {
+        SUPERSEDED.remove();
+    }
+
+    // sources are lexed independently, the last one on the calling thread, and the results kept in source order
+    static List<TokenStream> tokenizeAll(LinkedHashMap<String, String> sources) throws TokenizeException {
+        var lexers = sources.entrySet().stream()
                 .map(source -> {
-                    // Do this in 1 map iteration to ensure we preserve iteration order over our input
                     var sourceValue = source.getValue();
                     if (!sourceValue.endsWith("\n")) {
                         sourceValue += "\n";
                     }
-                    return new Lexer(source.getKey(), normalizeCrlf(sourceValue));
+                    return new Lexer(source.getKey(), sourceValue);
                 })
-                .map(it -> {
-					try {
-						return it.tokenize();
-					} catch (TokenizeException e) {
-						throw new RuntimeException(e);
-					}
-				})
-                .flatMap(tokenStream -> tokenStream.getTokens().stream())
-                .collect(Collectors.collectingAndThen(Collectors.toList(), TokenStream::new));
+                .collect(Collectors.toList());
+        if (lexers.size() < 2) {
+            return lexers.stream().map(Lexer::tokenize).collect(Collectors.toList());
+        }
 
-        var postproc = new Preprocessor(combinedStream).preprocess();
-        return new Parser(postproc).parse();
+        var pending = new ArrayList<Future<TokenStream>>();
+        for (var lexer : lexers.subList(0, lexers.size() - 1)) {
+            pending.add(LEXER_EXECUTOR.submit(lexer::tokenize));
+        }
+        var last = lexers.get(lexers.size() - 1).tokenize();
+
+        var streams = new ArrayList<TokenStream>(lexers.size());
+        for (var future : pending) {
+            try {
+                streams.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("compile superseded");
+            }
+        }
+        streams.add(last);
+        return streams;
     }
 
 	public static LootFilter fromSource(String filename, String source) throws CompileException {
@@ -98,27 +180,34 @@ public class LootFilter {
     }
 
     public @NonNull DisplayConfig findMatch(LootFiltersPlugin plugin, PluginTileItem item) {
-        var display = new DisplayConfig(Color.WHITE).toBuilder()
-                .compact(plugin.getConfig().compactMode())
-                .build();
-        for (var rule : rules) {
-            if (!rule.getCond().test(plugin, item)) {
+        var display = DEFAULT_DISPLAY.toBuilder()
+                .compact(plugin.getConfig().compactMode());
+        var evalTrace = new ArrayList<Integer>();
+        for (var i : index.candidates(item)) {
+            if (!conditions[i].test(plugin, item)) {
                 continue;
             }
 
-            display = display.merge(rule.getDisplay());
-            display.getEvalTrace().add(rule.getSourceLine());
+            var rule = rules.get(i);
+            rule.getDisplay().applyTo(display);
+            evalTrace.add(rule.getSourceLine());
             if (rule.isTerminal()) {
-                return display;
+                break;
             }
         }
-        return display;
+        return intern(display.evalTrace(evalTrace).build());
+    }
+
+    private DisplayConfig intern(DisplayConfig display) {
+        var existing = displays.putIfAbsent(display, display);
+        return existing != null ? existing : display;
     }
 
     public static Builder builder() {
         return new Builder();
     }
 
+    @Getter
     public static class Builder {
         private String name;
         private String filename;
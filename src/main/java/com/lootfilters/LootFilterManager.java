@@ -5,7 +5,12 @@ import java.io.FileNotFoundException;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import lombok.Getter;
@@ -33,8 +38,24 @@ public class LootFilterManager {
 	@Getter
 	private final List<String> filenames = new ArrayList<>();
 
+	// Filters compile one at a time in the background. Only the most recent load matters, so starting one makes
+	// whichever compile is running give up between stages, and any still queued never start.
+	private static final ExecutorService COMPILE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		var thread = new Thread(runnable, "loot-filters-compiler");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	@Getter
-	private LootFilter loadedFilter;
+	private volatile LootFilter loadedFilter;
+
+	// reuses unchanged blocks from the last compile, which makes reloading while editing a filter cheap
+	private final IncrementalCompiler compiler = new IncrementalCompiler();
+
+	// bumped by every load, a compile only publishes its result if no other load has started since
+	private final AtomicLong generation = new AtomicLong();
+	private Future<?> pendingCompile;
+	private CompletableFuture<LootFilter> pendingResult;
 
 	public static String toFilename(String filterName) {
 		return filterName.replaceAll("[^a-zA-Z0-9._-]", "_") + ".rs2f";
@@ -44,7 +65,9 @@ public class LootFilterManager {
 		return reload();
 	}
 
-	public void shutDown() {
+	public synchronized void shutDown() {
+		generation.incrementAndGet();
+		cancelPending();
 		filenames.clear();
 		loadedFilter = null;
 	}
@@ -69,31 +92,59 @@ public class LootFilterManager {
 		filenames.addAll(next);
     }
 
-	public CompletableFuture<LootFilter> loadFilter() {
-		return CompletableFuture.supplyAsync(() -> {
+	/**
+	 * Compiles the selected filter in the background. The future is cancelled if another load starts before it's done,
+	 * in which case loadedFilter is left alone.
+	 */
+	public synchronized CompletableFuture<LootFilter> loadFilter() {
+		var loadGeneration = generation.incrementAndGet();
+		cancelPending();
+
+		var result = new CompletableFuture<LootFilter>();
+		pendingResult = result;
+		pendingCompile = COMPILE_EXECUTOR.submit(() -> {
+			LootFilter.setSupersededCheck(() -> generation.get() != loadGeneration);
 			try {
-				return doLoadFilter();
+				result.complete(doLoadFilter(loadGeneration));
+			} catch (CancellationException e) {
+				result.cancel(false);
 			} catch (Exception e) {
-				throw new RuntimeException(e);
+				result.completeExceptionally(e);
+			} finally {
+				LootFilter.clearSupersededCheck();
 			}
 		});
+		return result;
+	}
+
+	private void cancelPending() {
+		if (pendingCompile != null) {
+			pendingCompile.cancel(false); // a running compile notices the generation change on its own
+			pendingResult.cancel(false);
+			pendingCompile = null;
+			pendingResult = null;
+		}
 	}
 
-	private LootFilter doLoadFilter() throws IOException
+	private LootFilter doLoadFilter(long loadGeneration) throws IOException
 	{
+		if (loadGeneration != generation.get()) {
+			throw new CancellationException("compile superseded");
+		}
+
 		var selected = plugin.getSelectedFilter();
 		if (selected == null) {
-			return saveLoaded(LootFilter.Nop);
+			return saveLoaded(LootFilter.Nop, loadGeneration);
 		}
 		if (DefaultFilter.isDefault(selected)) {
-			return saveLoaded(DefaultFilter.loadByName(selected));
+			return saveLoaded(DefaultFilter.loadByName(selected), loadGeneration);
 		}
 
 		var file = new File(LootFiltersPlugin.FILTER_DIRECTORY, selected);
 		var src = Files.readString(file.toPath());
-		var filter = LootFilter.fromSource(file.getName(), src);
+		var filter = FilterCache.load(file.getName(), src, compiler::compile);
 
-		return saveLoaded(filter);
+		return saveLoaded(filter, loadGeneration);
 	}
 
 	public void createFilter(String name, String src) throws IOException {
@@ -119,7 +170,11 @@ public class LootFilterManager {
         }
     }
 
-	private LootFilter saveLoaded(LootFilter filter) {
+	private synchronized LootFilter saveLoaded(LootFilter filter, long loadGeneration) {
+		if (loadGeneration != generation.get()) {
+			throw new CancellationException("compile superseded");
+		}
+
 		loadedFilter = filter;
 		return filter;
 	}
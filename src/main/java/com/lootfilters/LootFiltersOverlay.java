@@ -30,6 +30,7 @@ import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -40,6 +41,7 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
+import static com.lootfilters.TileItemIndex.MAX_RENDER_DISTANCE;
 import static com.lootfilters.util.TextUtil.abbreviate;
 import static com.lootfilters.util.TextUtil.abbreviateValue;
 import static com.lootfilters.util.TextUtil.withParentheses;
@@ -52,12 +54,14 @@ public class LootFiltersOverlay extends Overlay {
     private static final int TIMER_RADIUS = 5;
     private static final int DEFAULT_IMAGE_HEIGHT = 32;
     private static final int DEFAULT_IMAGE_WIDTH = 36;
-    private static final int MAX_DISTANCE = 24 * 128; // in LocalPoint units
 
     private final Client client;
     private final LootFiltersPlugin plugin;
     private final LootFiltersConfig config;
 
+    // grouped render items for each tile, only rebuilt once the items on a tile or their displays have changed
+    private final Map<Tile, Map<Boolean, Deque<RenderItem>>> renderGroups = new HashMap<>();
+
     @Inject
     public LootFiltersOverlay(Client client, LootFiltersPlugin plugin, LootFiltersConfig config) {
         setPosition(OverlayPosition.DYNAMIC);
@@ -83,8 +87,14 @@ public class LootFiltersOverlay extends Overlay {
         var hoveredHighlight = new AtomicInteger(-1);
 
         var player = client.getLocalPlayer();
+        if (player == null) {
+            return null;
+        }
 
-        for (var entry : plugin.getTileItemIndex().entrySet()) { // all tile draws have to go first so text is on top
+        var textMode = getTextMode();
+        var inRange = plugin.getTileItemIndex().findInRange(player.getLocalLocation(), MAX_RENDER_DISTANCE);
+
+        for (var entry : inRange) { // all tile draws have to go first so text is on top
             var tile = entry.getKey();
             if (tile.getItemLayer() == null) {
                 continue;
@@ -95,7 +105,7 @@ public class LootFiltersOverlay extends Overlay {
 
             highlightTiles(g, tile, entry.getValue());
         }
-        for (var entry : plugin.getTileItemIndex().entrySet()) {
+        for (var entry : inRange) {
             var tile = entry.getKey();
             if (tile.getItemLayer() == null) {
                 continue;
@@ -111,7 +121,11 @@ public class LootFiltersOverlay extends Overlay {
                 continue;
             }
 
-            var items = createItemCollection(entry.getValue());
+            var items = renderGroups.get(tile);
+            if (items == null) {
+                items = createItemCollection(entry.getValue());
+                renderGroups.put(tile, items);
+            }
             var currentOffset = 0;
             var compactRowPosition = 0;
 
@@ -158,17 +172,6 @@ public class LootFiltersOverlay extends Overlay {
                     continue;
                 }
 
-                // we look ahead at the icon width (if there is one) because it will affect text offset further down
-                // depending on the configured icon position
-                var iconWidth = 0;
-                if (match.getIcon() != null) {
-                    var key = match.getIcon().getCacheKey(item.getFirstItem());
-                    var icon = plugin.getIconIndex().get(key);
-                    if (icon != null) {
-                        iconWidth = icon.getWidth();
-                    }
-                }
-
                 var loc = LocalPoint.fromWorld(tile.getItemLayer().getWorldView(), tile.getWorldLocation());
                 if (loc == null) {
                     continue;
@@ -178,7 +181,16 @@ public class LootFiltersOverlay extends Overlay {
                     g.setFont(match.getFont());
                 } // otherwise we don't have to do anything, the font is already set
 
-                var displayText = buildDisplayText(item.getFirstItem(), item.getCounts().getCount(), item.getCounts().getQuantity(), match);
+                var layout = item.getLayout();
+                if (layout == null || !layout.isValidFor(textMode, g.getFont())) {
+                    layout = createTextLayout(g, item, textMode);
+                    item.setLayout(layout);
+                }
+
+                // we look ahead at the icon width (if there is one) because it will affect text offset further down
+                // depending on the configured icon position
+                var iconWidth = layout.getIconWidth();
+                var displayText = layout.getText();
                 var textPoint = getCanvasTextLocation(client, g, loc, displayText, tile.getItemLayer().getHeight() + config.overlayZOffset());
                 if (textPoint == null) {
                     continue;
@@ -189,9 +201,8 @@ public class LootFiltersOverlay extends Overlay {
                     textPoint.x += iconWidth / 2;
                 }
 
-                var fm = g.getFontMetrics(g.getFont());
-                var textWidth = fm.stringWidth(displayText);
-                var textHeight = fm.getHeight();
+                var textWidth = layout.getWidth();
+                var textHeight = layout.getHeight();
                 var visualOffset = config.reverseOverlay() ? -(shift + textHeight) : shift;
 
                 var text = new TextComponent();
@@ -357,6 +368,34 @@ public class LootFiltersOverlay extends Overlay {
         return Color.GREEN;
     }
 
+    // everything outside of a render item that its display text depends on, packed together so that a cached layout
+    // can be checked against it cheaply
+    private int getTextMode() {
+        return (plugin.isHotkeyActive() ? 1 : 0)
+                | (config.hotkeyShowValues() ? 2 : 0)
+                | config.valueDisplayType().ordinal() << 2
+                | config.dualValueDisplay().ordinal() << 8;
+    }
+
+    private TextLayout createTextLayout(Graphics2D g, RenderItem item, int textMode) {
+        var match = item.getOverlayKey().getDisplayConfig();
+        var iconWidth = 0;
+        var iconPending = false;
+        if (match.getIcon() != null) {
+            var key = match.getIcon().getCacheKey(item.getFirstItem());
+            var icon = plugin.getIconIndex().get(key);
+            if (icon != null) {
+                iconWidth = icon.getWidth();
+            } else {
+                iconPending = true; // not loaded yet, so measure again next frame
+            }
+        }
+
+        var text = buildDisplayText(item.getFirstItem(), item.getCounts().getCount(), item.getCounts().getQuantity(), match);
+        var fm = g.getFontMetrics(g.getFont());
+        return new TextLayout(textMode, g.getFont(), iconPending, text, fm.stringWidth(text), fm.getHeight(), iconWidth);
+    }
+
     private String buildDisplayText(PluginTileItem item, int unstackedCount, int quantity, DisplayConfig display) {
         var text = item.getName();
 
@@ -525,6 +564,21 @@ public class LootFiltersOverlay extends Overlay {
         return new Dimension(image.getWidth() + xpad, image.getHeight());
     }
 
+    /**
+     * Drops the grouped render items for a tile, which have to be rebuilt when an item on it spawns, despawns or
+     * changes quantity.
+     */
+    public void invalidate(Tile tile) {
+        renderGroups.remove(tile);
+    }
+
+    /**
+     * Drops the grouped render items for every tile, e.g. when displays have been reevaluated.
+     */
+    public void invalidateAll() {
+        renderGroups.clear();
+    }
+
     private Map<Boolean, Deque<RenderItem>> createItemCollection(List<PluginTileItem> items) {
         Map<Boolean, Deque<RenderItem>> itemCollection = new HashMap<>();
         itemCollection.put(true, new ArrayDeque<>());
@@ -555,11 +609,35 @@ public class LootFiltersOverlay extends Overlay {
         DisplayConfig displayConfig;
     }
 
-    @Value
+    @Getter
     private static class RenderItem {
-        PluginTileItem firstItem;
-        OverlayKey overlayKey;
-        ItemCounts counts;
+        private final PluginTileItem firstItem;
+        private final OverlayKey overlayKey;
+        private final ItemCounts counts;
+
+        // render items live as long as their tile's render group, so the text only has to be laid out once
+        @Setter private TextLayout layout;
+
+        RenderItem(PluginTileItem firstItem, OverlayKey overlayKey, ItemCounts counts) {
+            this.firstItem = firstItem;
+            this.overlayKey = overlayKey;
+            this.counts = counts;
+        }
+    }
+
+    @Value
+    private static class TextLayout {
+        int textMode;
+        Font font;
+        boolean iconPending;
+        String text;
+        int width;
+        int height;
+        int iconWidth;
+
+        boolean isValidFor(int textMode, Font font) {
+            return this.textMode == textMode && this.font == font && !iconPending;
+        }
     }
 
     @Getter
@@ -580,7 +658,7 @@ public class LootFiltersOverlay extends Overlay {
         var pLoc = player.getLocalLocation();
         var tLoc = tile.getLocalLocation();
         if (pLoc.getWorldView() == tLoc.getWorldView()) { // avoid transforming unless we absolutely must
-            return pLoc.distanceTo(tLoc) <= MAX_DISTANCE;
+            return pLoc.distanceTo(tLoc) <= MAX_RENDER_DISTANCE;
         }
 
         if (pLoc.getWorldView() != WorldView.TOPLEVEL) {
@@ -589,7 +667,7 @@ public class LootFiltersOverlay extends Overlay {
         if (tLoc.getWorldView() != WorldView.TOPLEVEL) {
             tLoc = toTopLevel(client, tLoc);
         }
-        return pLoc.distanceTo(tLoc) <= MAX_DISTANCE;
+        return pLoc.distanceTo(tLoc) <= MAX_RENDER_DISTANCE;
     }
 
     private static LocalPoint toTopLevel(Client client, LocalPoint loc) {
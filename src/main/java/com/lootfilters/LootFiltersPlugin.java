@@ -7,6 +7,7 @@ import com.lootfilters.migration.Migrate_110_111;
 import com.lootfilters.migration.Migrate_133_140;
 import com.lootfilters.model.DisplayConfigIndex;
 import com.lootfilters.model.IconIndex;
+import com.lootfilters.model.LootbeamHeight;
 import com.lootfilters.model.PluginTileItem;
 import com.lootfilters.model.SoundProvider;
 import com.lootfilters.util.FilterUtil;
@@ -46,7 +47,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -69,6 +72,7 @@ public class LootFiltersPlugin extends Plugin {
 	public static final File FILTER_DIRECTORY = new File(PLUGIN_DIRECTORY, "filters");
 	public static final File SOUND_DIRECTORY = new File(PLUGIN_DIRECTORY, "sounds");
 	public static final File ICON_DIRECTORY = new File(PLUGIN_DIRECTORY, "icons");
+	public static final File CACHE_DIRECTORY = new File(PLUGIN_DIRECTORY, "cache");
 
 	@Inject private Client client;
 	@Inject private ClientThread clientThread;
@@ -100,6 +104,7 @@ public class LootFiltersPlugin extends Plugin {
 	@Inject private LootbeamIndex lootbeamIndex;
 	@Inject private DisplayConfigIndex displayIndex;
 	@Inject private IconIndex iconIndex;
+	@Inject private MatchCache matchCache;
 
 	private final MenuEntryComposer menuEntryComposer = new MenuEntryComposer(this);
 
@@ -111,7 +116,7 @@ public class LootFiltersPlugin extends Plugin {
 	private final List<String> queuedChatMessages = new ArrayList<>();
 
 	@Getter
-	private LootFilter activeFilter = LootFilter.Nop; // parsed filter + config decoration
+	private volatile LootFilter activeFilter = LootFilter.Nop; // parsed filter + config decoration
 
 	@Setter private int hoveredItem = -1;
 	@Setter private int hoveredHide = -1;
@@ -119,6 +124,10 @@ public class LootFiltersPlugin extends Plugin {
 	@Setter private boolean hotkeyActive = false;
 	@Setter private boolean isOverlayEnabled = true;
 
+	// config that lootbeams and icons were last built with, changing either forces a full rebuild of them
+	private LootbeamHeight lootbeamHeight;
+	private int compactRenderSize;
+
 	public String getSelectedFilter() {
 		return configManager.getConfiguration(CONFIG_GROUP, SELECTED_FILTER_KEY);
 	}
@@ -163,6 +172,9 @@ public class LootFiltersPlugin extends Plugin {
 
 		initPluginDirectory();
 
+		lootbeamHeight = config.lootbeamHeight();
+		compactRenderSize = config.compactRenderSize();
+
 		Migrate_133_140.run(this);
 		Migrate_1105_1106.run(this);
 		Migrate_110_111.run(this);
@@ -176,7 +188,9 @@ public class LootFiltersPlugin extends Plugin {
 			pluginPanel.reflowFilterSelect(filterManager.getFilenames(), getSelectedFilter());
 			pluginPanel.reflowFilterInfo();
 		}).exceptionally(e -> {
-			log.error("init filter manager", e);
+			if (!(e.getCause() instanceof CancellationException)) { // another filter was selected while starting up
+				log.error("init filter manager", e);
+			}
 			pluginPanel.reflowFilterSelect(filterManager.getFilenames(), getSelectedFilter());
 			return null;
 		});
@@ -202,6 +216,7 @@ public class LootFiltersPlugin extends Plugin {
 		FILTER_DIRECTORY.mkdir();
 		SOUND_DIRECTORY.mkdir();
 		ICON_DIRECTORY.mkdir();
+		CACHE_DIRECTORY.mkdir();
 	}
 
 	@Provides
@@ -242,6 +257,9 @@ public class LootFiltersPlugin extends Plugin {
 			}
 
 			filterManager.loadFilter().handle((filter, e) -> {
+				if (e instanceof CancellationException) {
+					return null; // superseded by a later selection, which will reset the display itself
+				}
 				if (e != null) {
 					onFilterLoadError(e);
 					return null;
@@ -303,9 +321,10 @@ public class LootFiltersPlugin extends Plugin {
 	}
 
 	private void addItem(Tile tile, PluginTileItem item) {
-		var match = getActiveFilter().findMatch(this, item);
+		var match = matchCache.findMatch(this, item);
 
 		displayIndex.put(item, match);
+		overlay.invalidate(tile);
 		if (match.isShowLootbeam()) {
 			var beam = new Lootbeam(config, client, clientThread, tile.getLocalLocation(), match.getLootbeamColor());
 			lootbeamIndex.put(tile, item, beam);
@@ -316,29 +335,42 @@ public class LootFiltersPlugin extends Plugin {
 		if (match.getSound() != null && config.soundVolume() > 0) {
 			queuedAudio.add(match.getSound());
 		}
-		if (match.getIcon() != null && !match.isCompact()) {
-			iconIndex.inc(this, match.getIcon(), item);
-		}
-		if(match.isCompact()){
-			iconIndex.inc(this, match.getIcon(), item,config.compactRenderSize());
-		}
+		incIcon(item, match);
 	}
 
 	private void removeItem(Tile tile, PluginTileItem item) {
 		var display = displayIndex.get(item);
 		lootbeamIndex.remove(tile, item);
 		displayIndex.remove(item);
-		if (display != null && display.getIcon() != null) {
-			iconIndex.dec(display.getIcon(), item, display.isCompact()? config.compactRenderSize() : 16);
+		overlay.invalidate(tile);
+		if (display != null) {
+			decIcon(item, display);
+		}
+	}
+
+	private void incIcon(PluginTileItem item, DisplayConfig display) {
+		if (display.getIcon() != null) {
+			iconIndex.inc(this, display.getIcon(), item, getIconHeight(display));
 		}
 	}
 
+	private void decIcon(PluginTileItem item, DisplayConfig display) {
+		if (display.getIcon() != null) {
+			iconIndex.dec(display.getIcon(), item, getIconHeight(display));
+		}
+	}
+
+	private int getIconHeight(DisplayConfig display) {
+		return display.isCompact() ? config.compactRenderSize() : 16;
+	}
+
 	@Subscribe
 	public void onWorldViewUnloaded(WorldViewUnloaded event) {
 		tileItemIndex.remove(event.getWorldView());
 		lootbeamIndex.remove(event.getWorldView());
 		displayIndex.remove(event.getWorldView());
 		iconIndex.remove(event.getWorldView());
+		overlay.invalidateAll();
 	}
 
 	@Subscribe
@@ -381,13 +413,56 @@ public class LootFiltersPlugin extends Plugin {
 		lootbeamIndex.clear();
 		displayIndex.clear();
 		iconIndex.clear();
+		matchCache.clear();
+		overlay.invalidateAll();
 	}
 
 	private void resetDisplay() {
-		clientThread.invoke(() -> {
-			displayIndex.reset(this);
-			lootbeamIndex.reset(this);
-			iconIndex.reset(this);
-		});
+		clientThread.invoke(this::reevaluate);
+	}
+
+	// Re-runs the active filter over every item once and updates all of the display indices from that, lootbeams and
+	// icons are only rebuilt for items where the parts of the display that they depend on actually changed.
+	private void reevaluate() {
+		var rebuild = lootbeamHeight != config.lootbeamHeight() || compactRenderSize != config.compactRenderSize();
+		if (rebuild) {
+			lootbeamIndex.clear();
+			iconIndex.clear();
+			lootbeamHeight = config.lootbeamHeight();
+			compactRenderSize = config.compactRenderSize();
+		}
+
+		overlay.invalidateAll();
+		for (var entry : tileItemIndex.entrySet()) {
+			var tile = entry.getKey();
+			for (var item : entry.getValue()) {
+				var prev = rebuild ? null : displayIndex.get(item);
+				var match = matchCache.findMatch(this, item);
+				displayIndex.put(item, match);
+
+				if (prev == null || isLootbeamChanged(prev, match)) {
+					lootbeamIndex.remove(tile, item);
+					if (match.isShowLootbeam()) {
+						var beam = new Lootbeam(config, client, clientThread, tile.getLocalLocation(), match.getLootbeamColor());
+						lootbeamIndex.put(tile, item, beam);
+					}
+				}
+				if (prev == null || isIconChanged(prev, match)) {
+					if (prev != null) {
+						decIcon(item, prev);
+					}
+					incIcon(item, match);
+				}
+			}
+		}
+	}
+
+	private static boolean isLootbeamChanged(DisplayConfig prev, DisplayConfig next) {
+		return prev.isShowLootbeam() != next.isShowLootbeam()
+				|| next.isShowLootbeam() && !Objects.equals(prev.getLootbeamColor(), next.getLootbeamColor());
+	}
+
+	private static boolean isIconChanged(DisplayConfig prev, DisplayConfig next) {
+		return prev.isCompact() != next.isCompact() || !Objects.equals(prev.getIcon(), next.getIcon());
 	}
 }
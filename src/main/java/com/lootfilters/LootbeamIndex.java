@@ -66,18 +66,4 @@ public class LootbeamIndex {
         }
         index.clear();
     }
-
-    public void reset(LootFiltersPlugin plugin) {
-        clear();
-        for (var entry : plugin.getTileItemIndex().entrySet()) {
-            var tile = entry.getKey();
-            for (var item : entry.getValue()) {
-                var match = plugin.getActiveFilter().findMatch(plugin, item);
-                if (match.isShowLootbeam()) {
-                    put(tile, item, new Lootbeam(plugin.getConfig(), plugin.getClient(), plugin.getClientThread(), tile.getLocalLocation(),
-                            match.getLootbeamColor()));
-                }
-            }
-        }
-    }
 }
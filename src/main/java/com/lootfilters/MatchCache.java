@@ -0,0 +1,256 @@
+package com.lootfilters;
+
+import com.lootfilters.ast.AndCondition;
+import com.lootfilters.ast.Condition;
+import com.lootfilters.ast.NotCondition;
+import com.lootfilters.ast.OrCondition;
+import com.lootfilters.ast.leaf.AccountTypeCondition;
+import com.lootfilters.ast.leaf.AreaCondition;
+import com.lootfilters.ast.leaf.ComparatorCondition;
+import com.lootfilters.ast.leaf.ConstCondition;
+import com.lootfilters.ast.leaf.ItemIdCondition;
+import com.lootfilters.ast.leaf.ItemNameCondition;
+import com.lootfilters.ast.leaf.ItemNotedCondition;
+import com.lootfilters.ast.leaf.ItemOwnershipCondition;
+import com.lootfilters.ast.leaf.ItemQuantityCondition;
+import com.lootfilters.ast.leaf.ItemStackableCondition;
+import com.lootfilters.ast.leaf.ItemTradeableCondition;
+import com.lootfilters.ast.leaf.ItemValueCondition;
+import com.lootfilters.model.PluginTileItem;
+import com.lootfilters.model.ValueType;
+import lombok.NonNull;
+import lombok.Value;
+import net.runelite.api.gameval.VarbitID;
+
+import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * MatchCache memoizes the results of findMatch on the active filter. Items are keyed on only what the filter's rules
+ * can actually observe: the item id (which fixes its name and noted/stackable/tradeable flags), which side of every
+ * quantity, value and area boundary the item falls on, and its ownership and the account type if any rule checks
+ * them. The cache is dropped whenever the active filter changes.
+ */
+@Singleton
+public class MatchCache {
+    private static final int MAX_SIZE = 4096;
+
+    private final Map<Key, DisplayConfig> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, DisplayConfig> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private LootFilter filter;
+    private Signature signature;
+
+    private long hits;
+    private long misses;
+
+    public @NonNull DisplayConfig findMatch(LootFiltersPlugin plugin, PluginTileItem item) {
+        var activeFilter = plugin.getActiveFilter();
+        if (activeFilter != filter) {
+            clear();
+            filter = activeFilter;
+            signature = Signature.of(activeFilter);
+        }
+        if (signature == null) {
+            return activeFilter.findMatch(plugin, item);
+        }
+
+        var key = signature.keyOf(plugin, item);
+        var match = cache.get(key);
+        if (match != null) {
+            ++hits;
+            return match;
+        }
+
+        ++misses;
+        match = activeFilter.findMatch(plugin, item);
+        cache.put(key, match);
+        return match;
+    }
+
+    public void clear() {
+        cache.clear();
+        filter = null;
+        signature = null;
+        hits = 0;
+        misses = 0;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public float getHitRate() {
+        var total = hits + misses;
+        return total > 0 ? (float) hits / total : 0;
+    }
+
+    @Value
+    private static class Key {
+        int id;
+        int quantity;
+        int geValue;
+        int haValue;
+        int highestValue;
+        int x;
+        int y;
+        int plane;
+        int ownership;
+        int accountType;
+        boolean compact;
+    }
+
+    private static class Signature {
+        // every boundary at which some comparison can flip, the bucket an item lands in is its position in these
+        private final long[] quantityPoints;
+        private final long[] gePoints;
+        private final long[] haPoints;
+        private final long[] highestPoints;
+        private final long[] xPoints;
+        private final long[] yPoints;
+        private final long[] planePoints;
+        private final boolean readsOwnership;
+        private final boolean readsAccountType;
+
+        private Signature(Builder builder) {
+            this.quantityPoints = toArray(builder.quantityPoints);
+            this.gePoints = toArray(builder.gePoints);
+            this.haPoints = toArray(builder.haPoints);
+            this.highestPoints = toArray(builder.highestPoints);
+            this.xPoints = toArray(builder.xPoints);
+            this.yPoints = toArray(builder.yPoints);
+            this.planePoints = toArray(builder.planePoints);
+            this.readsOwnership = builder.readsOwnership;
+            this.readsAccountType = builder.readsAccountType;
+        }
+
+        // returns null if the filter reads something that we can't key on
+        static Signature of(LootFilter filter) {
+            var builder = new Builder();
+            for (var rule : filter.getRules()) {
+                if (!builder.visit(rule.getCond())) {
+                    return null;
+                }
+            }
+            return new Signature(builder);
+        }
+
+        Key keyOf(LootFiltersPlugin plugin, PluginTileItem item) {
+            var quantity = item.getQuantity();
+            var ge = item.getGePrice();
+            var ha = item.getHaPrice();
+            var point = item.getWorldPoint();
+
+            // must agree with ItemValueCondition.getLhs, including overflow
+            return new Key(
+                    item.getId(),
+                    bucket(quantityPoints, quantity),
+                    bucket(gePoints, ge * quantity),
+                    bucket(haPoints, ha * quantity),
+                    bucket(highestPoints, Math.max(ge, ha) * quantity),
+                    bucket(xPoints, point.getX()),
+                    bucket(yPoints, point.getY()),
+                    bucket(planePoints, point.getPlane()),
+                    readsOwnership ? item.getOwnership() : 0,
+                    readsAccountType ? plugin.getClient().getVarbitValue(VarbitID.IRONMAN) : 0,
+                    plugin.getConfig().compactMode());
+        }
+
+        private static int bucket(long[] points, int value) {
+            if (points.length == 0) {
+                return 0;
+            }
+            var index = Arrays.binarySearch(points, value);
+            return index >= 0 ? index + 1 : -(index + 1);
+        }
+
+        private static long[] toArray(TreeSet<Long> points) {
+            return points.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    private static class Builder {
+        final TreeSet<Long> quantityPoints = new TreeSet<>();
+        final TreeSet<Long> gePoints = new TreeSet<>();
+        final TreeSet<Long> haPoints = new TreeSet<>();
+        final TreeSet<Long> highestPoints = new TreeSet<>();
+        final TreeSet<Long> xPoints = new TreeSet<>();
+        final TreeSet<Long> yPoints = new TreeSet<>();
+        final TreeSet<Long> planePoints = new TreeSet<>();
+        boolean readsOwnership;
+        boolean readsAccountType;
+
+        boolean visit(Condition cond) {
+            if (cond instanceof AndCondition) {
+                return visitAll(((AndCondition) cond).getRules());
+            } else if (cond instanceof OrCondition) {
+                return visitAll(((OrCondition) cond).getRules());
+            } else if (cond instanceof NotCondition) {
+                return visit(((NotCondition) cond).getInner());
+            } else if (cond instanceof ConstCondition
+                    || cond instanceof ItemIdCondition
+                    || cond instanceof ItemNameCondition
+                    || cond instanceof ItemNotedCondition
+                    || cond instanceof ItemStackableCondition
+                    || cond instanceof ItemTradeableCondition) {
+                return true; // fixed by the item id
+            } else if (cond instanceof ItemQuantityCondition) {
+                addPoints(quantityPoints, (ComparatorCondition) cond);
+                return true;
+            } else if (cond instanceof ItemValueCondition) {
+                addPoints(valuePoints(((ItemValueCondition) cond).getValueType()), (ComparatorCondition) cond);
+                return true;
+            } else if (cond instanceof AreaCondition) {
+                var area = (AreaCondition) cond;
+                addRange(xPoints, area.getP0().getX(), area.getP1().getX());
+                addRange(yPoints, area.getP0().getY(), area.getP1().getY());
+                addRange(planePoints, area.getP0().getPlane(), area.getP1().getPlane());
+                return true;
+            } else if (cond instanceof ItemOwnershipCondition) {
+                readsOwnership = true;
+                return true;
+            } else if (cond instanceof AccountTypeCondition) {
+                readsAccountType = true;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean visitAll(List<Condition> conds) {
+            for (var cond : conds) {
+                if (!visit(cond)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private TreeSet<Long> valuePoints(ValueType type) {
+            switch (type) {
+                case HIGHEST: return highestPoints;
+                case GE: return gePoints;
+                default: return haPoints;
+            }
+        }
+
+        // the result of any comparison against rhs is constant below rhs, at rhs, and above it
+        private static void addPoints(TreeSet<Long> points, ComparatorCondition cond) {
+            points.add((long) cond.getRhs());
+            points.add((long) cond.getRhs() + 1);
+        }
+
+        // an area check on one axis is only true from min through max inclusive
+        private static void addRange(TreeSet<Long> points, int min, int max) {
+            points.add((long) min);
+            points.add((long) max + 1);
+        }
+    }
+}
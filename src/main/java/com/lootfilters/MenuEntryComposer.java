@@ -5,7 +5,6 @@ import lombok.AllArgsConstructor;
 import net.runelite.api.Client;
 import net.runelite.api.MenuAction;
 import net.runelite.api.MenuEntry;
-import net.runelite.api.coords.WorldPoint;
 
 import java.awt.Color;
 import java.util.Arrays;
@@ -152,8 +151,7 @@ public class MenuEntryComposer {
 
     private List<PluginTileItem> getItemsForEntry(MenuEntry entry) {
         var wv = plugin.getClient().getWorldView(entry.getWorldViewId());
-        var point = WorldPoint.fromScene(wv, entry.getParam0(), entry.getParam1(), wv.getPlane());
-        return plugin.getTileItemIndex().findItem(point, entry.getIdentifier());
+        return plugin.getTileItemIndex().findItem(entry.getWorldViewId(), wv.getPlane(), entry.getParam0(), entry.getParam1(), entry.getIdentifier());
     }
 
     private String buildTargetText(PluginTileItem item, String baseTarget, Color color) {
@@ -0,0 +1,152 @@
+package com.lootfilters;
+
+import com.lootfilters.ast.AndCondition;
+import com.lootfilters.ast.Condition;
+import com.lootfilters.ast.OrCondition;
+import com.lootfilters.ast.leaf.ConstCondition;
+import com.lootfilters.ast.leaf.ItemIdCondition;
+import com.lootfilters.ast.leaf.ItemNameCondition;
+import com.lootfilters.model.PluginTileItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static com.lootfilters.util.TextUtil.isInfixWildcard;
+
+/**
+ * RuleIndex prefilters the rules of a filter by item id and exact item name. A rule whose condition can only be true
+ * for a known set of ids and/or names is registered under those keys, everything else (wildcards, value, area, etc.)
+ * goes on a generic list that every item has to check. Candidates are always returned in rule order.
+ */
+class RuleIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<Integer, int[]> byId;
+    private final Map<String, int[]> byName;
+    private final int[] generic;
+
+    RuleIndex(List<FilterRule> rules) {
+        var byId = new HashMap<Integer, List<Integer>>();
+        var byName = new HashMap<String, List<Integer>>();
+        var generic = new ArrayList<Integer>();
+        for (var i = 0; i < rules.size(); ++i) {
+            var keys = keysOf(rules.get(i).getCond());
+            if (keys == null) {
+                generic.add(i);
+                continue;
+            }
+
+            for (var id : keys.ids) {
+                byId.computeIfAbsent(id, it -> new ArrayList<>()).add(i);
+            }
+            for (var name : keys.names) {
+                byName.computeIfAbsent(name, it -> new ArrayList<>()).add(i);
+            }
+        }
+
+        this.byId = new HashMap<>();
+        byId.forEach((k, v) -> this.byId.put(k, toArray(v)));
+        this.byName = new HashMap<>();
+        byName.forEach((k, v) -> this.byName.put(k, toArray(v)));
+        this.generic = toArray(generic);
+    }
+
+    /**
+     * Returns the indices of every rule that could match the given item, in ascending order.
+     */
+    int[] candidates(PluginTileItem item) {
+        var a = byId.getOrDefault(item.getId(), EMPTY);
+        var b = byName.getOrDefault(item.getLowercaseName(), EMPTY);
+        var c = generic;
+        if (a.length == 0 && b.length == 0) {
+            return c;
+        }
+
+        // a rule can be registered under both its id and name (e.g. id:X || name:"Y"), so skip repeats
+        var merged = new int[a.length + b.length + c.length];
+        int i = 0, j = 0, k = 0, n = 0;
+        while (i < a.length || j < b.length || k < c.length) {
+            var next = Integer.MAX_VALUE;
+            if (i < a.length) next = Math.min(next, a[i]);
+            if (j < b.length) next = Math.min(next, b[j]);
+            if (k < c.length) next = Math.min(next, c[k]);
+
+            if (i < a.length && a[i] == next) ++i;
+            if (j < b.length && b[j] == next) ++j;
+            if (k < c.length && c[k] == next) ++k;
+            merged[n++] = next;
+        }
+        return n == merged.length ? merged : Arrays.copyOf(merged, n);
+    }
+
+    // returns the keys that must contain an item for cond to be true, or null if cond can't be narrowed down
+    private static Keys keysOf(Condition cond) {
+        if (cond instanceof ItemIdCondition) {
+            return new Keys(new HashSet<>(((ItemIdCondition) cond).getIds()), Set.of());
+        } else if (cond instanceof ItemNameCondition) {
+            var names = new HashSet<String>();
+            for (var name : ((ItemNameCondition) cond).getNames()) {
+                if (!isExactName(name)) {
+                    return null;
+                }
+                names.add(name.toLowerCase(Locale.ROOT));
+            }
+            return new Keys(Set.of(), names);
+        } else if (cond instanceof ConstCondition) {
+            return ((ConstCondition) cond).isTarget() ? null : new Keys(Set.of(), Set.of());
+        } else if (cond instanceof AndCondition) {
+            // every operand has to hold, so any one of them narrows the rule - use the tightest
+            Keys best = null;
+            for (var rule : ((AndCondition) cond).getRules()) {
+                var keys = keysOf(rule);
+                if (keys != null && (best == null || keys.size() < best.size())) {
+                    best = keys;
+                }
+            }
+            return best;
+        } else if (cond instanceof OrCondition) {
+            // any operand can hold, so the rule is only narrowed if every one of them is
+            var ids = new HashSet<Integer>();
+            var names = new HashSet<String>();
+            for (var rule : ((OrCondition) cond).getRules()) {
+                var keys = keysOf(rule);
+                if (keys == null) {
+                    return null;
+                }
+                ids.addAll(keys.ids);
+                names.addAll(keys.names);
+            }
+            return new Keys(ids, names);
+        }
+        return null;
+    }
+
+    // mirrors the wildcard handling in ItemNameCondition, anything else there is a case-insensitive equality check
+    private static boolean isExactName(String name) {
+        return !name.startsWith("*") && !name.endsWith("*") && !isInfixWildcard(name);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static class Keys {
+        final Set<Integer> ids;
+        final Set<String> names;
+
+        Keys(Set<Integer> ids, Set<String> names) {
+            this.ids = ids;
+            this.names = names;
+        }
+
+        int size() {
+            return ids.size() + names.size();
+        }
+    }
+}
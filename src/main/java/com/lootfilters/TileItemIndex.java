@@ -1,15 +1,18 @@
 package com.lootfilters;
 
 import com.lootfilters.model.PluginTileItem;
+import com.lootfilters.util.LongMap;
+import net.runelite.api.Perspective;
 import net.runelite.api.Tile;
 import net.runelite.api.TileItem;
 import net.runelite.api.WorldView;
-import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.coords.LocalPoint;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -17,22 +20,69 @@ import java.util.stream.Collectors;
 
 @Singleton
 public class TileItemIndex {
+    // how far from the player the overlay draws items, in LocalPoint units
+    public static final int MAX_RENDER_DISTANCE = 24 * 128;
+
+    // tiles are also bucketed into square cells of scene tiles, so range queries only look at the cells they overlap
+    private static final int CELL_BITS = 4;
+    private static final int PLANES = 4;
+
     private final Map<Tile, List<PluginTileItem>> itemIndex = new HashMap<>();
-    private final Map<WorldPoint, Tile> pointIndex = new HashMap<>();
+    // worldview -> cell (see cellKey) -> tiles in that cell
+    private final Map<Integer, Map<Integer, List<Tile>>> grid = new HashMap<>();
+    // tiles by position, see tileKey
+    private final LongMap<Tile> tilesByPosition = new LongMap<>();
+    // despawn and quantity change events only carry the TileItem, which is only ever equal to itself
+    private final Map<TileItem, PluginTileItem> tileItemIndex = new IdentityHashMap<>();
 
     public Set<Map.Entry<Tile, List<PluginTileItem>>> entrySet() {
         return itemIndex.entrySet();
     }
 
-    public PluginTileItem findItem(TileItem item) {
-        for (var entry : itemIndex.entrySet()) {
-            for (var pItem : entry.getValue()) {
-                if (pItem.equals(item)) {
-                    return pItem;
+    /**
+     * Returns the tiles in the same worldview as the given point that are within distance of it (in local units),
+     * along with their items. Tiles in any other worldview are all included, since comparing against them means
+     * transforming between worldviews, and the caller has to range check those itself.
+     */
+    public List<Map.Entry<Tile, List<PluginTileItem>>> findInRange(LocalPoint point, int distance) {
+        var inRange = new ArrayList<Map.Entry<Tile, List<PluginTileItem>>>();
+        for (var worldView : grid.entrySet()) {
+            if (worldView.getKey() != point.getWorldView()) {
+                for (var cell : worldView.getValue().values()) {
+                    for (var tile : cell) {
+                        inRange.add(Map.entry(tile, itemIndex.get(tile)));
+                    }
+                }
+                continue;
+            }
+
+            var tiles = (distance + Perspective.LOCAL_TILE_SIZE - 1) / Perspective.LOCAL_TILE_SIZE;
+            var minX = Math.max(point.getSceneX() - tiles, 0) >> CELL_BITS;
+            var minY = Math.max(point.getSceneY() - tiles, 0) >> CELL_BITS;
+            var maxX = Math.max(point.getSceneX() + tiles, 0) >> CELL_BITS;
+            var maxY = Math.max(point.getSceneY() + tiles, 0) >> CELL_BITS;
+            for (var plane = 0; plane < PLANES; ++plane) { // items on every plane are drawn, not just the player's
+                for (var x = minX; x <= maxX; ++x) {
+                    for (var y = minY; y <= maxY; ++y) {
+                        var cell = worldView.getValue().get(cellKey(plane, x, y));
+                        if (cell == null) {
+                            continue;
+                        }
+
+                        for (var tile : cell) {
+                            if (tile.getLocalLocation().distanceTo(point) <= distance) {
+                                inRange.add(Map.entry(tile, itemIndex.get(tile)));
+                            }
+                        }
+                    }
                 }
             }
         }
-        return null;
+        return inRange;
+    }
+
+    public PluginTileItem findItem(TileItem item) {
+        return tileItemIndex.get(item);
     }
 
     public List<PluginTileItem> findItem(Tile tile, int id) {
@@ -45,18 +95,19 @@ public class TileItemIndex {
                 .collect(Collectors.toList());
     }
 
-    public List<PluginTileItem> findItem(WorldPoint point, int id) {
-        return pointIndex.containsKey(point)
-                ? findItem(pointIndex.get(point), id)
-                : List.of();
+    public List<PluginTileItem> findItem(int worldView, int plane, int sceneX, int sceneY, int id) {
+        var tile = tilesByPosition.get(tileKey(worldView, plane, sceneX, sceneY));
+        return tile != null ? findItem(tile, id) : List.of();
     }
 
     public void put(Tile tile, PluginTileItem item) {
         if (!itemIndex.containsKey(tile)) {
             itemIndex.put(tile, new ArrayList<>());
+            tilesByPosition.put(tileKey(tile), tile);
+            addToGrid(tile);
         }
         itemIndex.get(tile).add(item);
-        pointIndex.put(tile.getWorldLocation(), tile);
+        tileItemIndex.put(item.getItem(), item);
     }
 
     public void remove(Tile tile, PluginTileItem item) {
@@ -66,23 +117,86 @@ public class TileItemIndex {
 
         var items = itemIndex.get(tile);
         items.remove(item);
+        if (item != null) {
+            tileItemIndex.remove(item.getItem());
+        }
         if (items.isEmpty()) {
             itemIndex.remove(tile);
-            pointIndex.remove(tile.getWorldLocation());
+            tilesByPosition.remove(tileKey(tile));
+            removeFromGrid(tile);
         }
     }
 
     public void remove(WorldView worldView) {
-        itemIndex.keySet().removeIf(it -> it.getLocalLocation().getWorldView() == worldView.getId());
-        pointIndex.values().removeIf(it -> it.getLocalLocation().getWorldView() == worldView.getId());
+        itemIndex.entrySet().removeIf(it -> {
+            if (it.getKey().getLocalLocation().getWorldView() != worldView.getId()) {
+                return false;
+            }
+            for (var item : it.getValue()) {
+                tileItemIndex.remove(item.getItem());
+            }
+            tilesByPosition.remove(tileKey(it.getKey()));
+            return true;
+        });
+        grid.remove(worldView.getId());
     }
 
-    public int pointIndexSize() {
-        return pointIndex.size();
+    public int gridSize() {
+        var size = 0;
+        for (var cells : grid.values()) {
+            for (var cell : cells.values()) {
+                size += cell.size();
+            }
+        }
+        return size;
     }
 
     public void clear() {
         itemIndex.clear();
-        pointIndex.clear();
+        grid.clear();
+        tilesByPosition.clear();
+        tileItemIndex.clear();
+    }
+
+    private void addToGrid(Tile tile) {
+        grid.computeIfAbsent(tile.getLocalLocation().getWorldView(), it -> new HashMap<>())
+                .computeIfAbsent(cellKey(tile), it -> new ArrayList<>())
+                .add(tile);
+    }
+
+    private void removeFromGrid(Tile tile) {
+        var worldView = tile.getLocalLocation().getWorldView();
+        var cells = grid.get(worldView);
+        var cell = cells != null ? cells.get(cellKey(tile)) : null;
+        if (cell == null) {
+            return;
+        }
+
+        cell.remove(tile);
+        if (cell.isEmpty()) {
+            cells.remove(cellKey(tile));
+            if (cells.isEmpty()) {
+                grid.remove(worldView);
+            }
+        }
+    }
+
+    private static int cellKey(Tile tile) {
+        var scenePoint = tile.getSceneLocation();
+        return cellKey(tile.getPlane(), scenePoint.getX() >> CELL_BITS, scenePoint.getY() >> CELL_BITS);
+    }
+
+    private static long tileKey(Tile tile) {
+        var scenePoint = tile.getSceneLocation();
+        return tileKey(tile.getLocalLocation().getWorldView(), tile.getPlane(), scenePoint.getX(), scenePoint.getY());
+    }
+
+    // scene coordinates fit in 12 bits each, and the top level worldview is -1
+    private static long tileKey(int worldView, int plane, int sceneX, int sceneY) {
+        return (long) (worldView + 1) << 32 | plane << 24 | sceneX << 12 | sceneY;
+    }
+
+    private static int cellKey(int plane, int cellX, int cellY) {
+        return plane << 24 | cellX << 12 | cellY;
     }
 }
@@ -3,10 +3,12 @@ package com.lootfilters.ast;
 import com.lootfilters.LootFiltersPlugin;
 import com.lootfilters.model.PluginTileItem;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 
 import java.util.List;
 
+@Getter
 @EqualsAndHashCode(callSuper = false)
 @ToString
 public class AndCondition extends Condition {
@@ -22,6 +24,11 @@ public class AndCondition extends Condition {
 
     @Override
     public boolean test(LootFiltersPlugin plugin, PluginTileItem item) {
-        return rules.stream().allMatch(it -> it.test(plugin, item));
+        for (var rule : rules) {
+            if (!rule.test(plugin, item)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
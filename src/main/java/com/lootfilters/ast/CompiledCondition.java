@@ -0,0 +1,95 @@
+package com.lootfilters.ast;
+
+import com.lootfilters.LootFiltersPlugin;
+import com.lootfilters.ast.leaf.ConstCondition;
+import com.lootfilters.model.PluginTileItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CompiledCondition is a Condition tree lowered into a flat branch program. Every instruction tests a single leaf and
+ * jumps to one of two successors depending on the result, so and/or/not short-circuiting is encoded entirely in the
+ * jump targets and evaluation is a single allocation-free loop.
+ */
+public final class CompiledCondition {
+    private static final int ACCEPT = -1;
+    private static final int REJECT = -2;
+
+    private final Condition[] tests;
+    private final int[] onTrue;
+    private final int[] onFalse;
+    private final int entry;
+
+    private CompiledCondition(Condition[] tests, int[] onTrue, int[] onFalse, int entry) {
+        this.tests = tests;
+        this.onTrue = onTrue;
+        this.onFalse = onFalse;
+        this.entry = entry;
+    }
+
+    public static CompiledCondition compile(Condition cond) {
+        var compiler = new Compiler();
+        var entry = compiler.emit(cond, ACCEPT, REJECT);
+
+        // instructions are emitted back-to-front since each one needs to know its successors, reverse them so that
+        // evaluation generally walks forward through the arrays
+        var size = compiler.tests.size();
+        var tests = new Condition[size];
+        var onTrue = new int[size];
+        var onFalse = new int[size];
+        for (var i = 0; i < size; ++i) {
+            var j = size - 1 - i;
+            tests[j] = compiler.tests.get(i);
+            onTrue[j] = remap(compiler.onTrue.get(i), size);
+            onFalse[j] = remap(compiler.onFalse.get(i), size);
+        }
+        return new CompiledCondition(tests, onTrue, onFalse, remap(entry, size));
+    }
+
+    public boolean test(LootFiltersPlugin plugin, PluginTileItem item) {
+        var pc = entry;
+        while (pc >= 0) {
+            pc = tests[pc].test(plugin, item) ? onTrue[pc] : onFalse[pc];
+        }
+        return pc == ACCEPT;
+    }
+
+    private static int remap(int target, int size) {
+        return target < 0 ? target : size - 1 - target;
+    }
+
+    private static final class Compiler {
+        final List<Condition> tests = new ArrayList<>();
+        final List<Integer> onTrue = new ArrayList<>();
+        final List<Integer> onFalse = new ArrayList<>();
+
+        // returns the entrypoint of the emitted code for cond, which continues to ifTrue or ifFalse
+        int emit(Condition cond, int ifTrue, int ifFalse) {
+            if (cond instanceof ConstCondition) {
+                return ((ConstCondition) cond).isTarget() ? ifTrue : ifFalse;
+            } else if (cond instanceof NotCondition) {
+                return emit(((NotCondition) cond).getInner(), ifFalse, ifTrue);
+            } else if (cond instanceof AndCondition) {
+                var children = ((AndCondition) cond).getRules();
+                var next = ifTrue;
+                for (var i = children.size() - 1; i >= 0; --i) {
+                    next = emit(children.get(i), next, ifFalse);
+                }
+                return next;
+            } else if (cond instanceof OrCondition) {
+                var children = ((OrCondition) cond).getRules();
+                var next = ifFalse;
+                for (var i = children.size() - 1; i >= 0; --i) {
+                    next = emit(children.get(i), ifTrue, next);
+                }
+                return next;
+            }
+
+            tests.add(cond);
+            onTrue.add(ifTrue);
+            onFalse.add(ifFalse);
+            return tests.size() - 1;
+        }
+    }
+}
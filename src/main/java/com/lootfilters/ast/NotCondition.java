@@ -3,8 +3,10 @@ package com.lootfilters.ast;
 import com.lootfilters.LootFiltersPlugin;
 import com.lootfilters.model.PluginTileItem;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 
+@Getter
 @EqualsAndHashCode(callSuper = false)
 @ToString
 public class NotCondition extends Condition {
@@ -3,8 +3,14 @@ package com.lootfilters.ast.leaf;
 import com.lootfilters.LootFiltersPlugin;
 import com.lootfilters.ast.LeafCondition;
 import com.lootfilters.model.PluginTileItem;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import net.runelite.api.gameval.VarbitID;
 
+@Getter
+@EqualsAndHashCode(callSuper = false)
+@ToString
 public class AccountTypeCondition extends LeafCondition {
     private final int type;
 
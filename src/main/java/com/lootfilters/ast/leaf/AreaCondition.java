@@ -3,8 +3,14 @@ package com.lootfilters.ast.leaf;
 import com.lootfilters.LootFiltersPlugin;
 import com.lootfilters.ast.LeafCondition;
 import com.lootfilters.model.PluginTileItem;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import net.runelite.api.coords.WorldPoint;
 
+@Getter
+@EqualsAndHashCode(callSuper = false)
+@ToString
 public class AreaCondition extends LeafCondition {
     private final WorldPoint p0, p1;
 
@@ -4,8 +4,12 @@ import com.lootfilters.LootFiltersPlugin;
 import com.lootfilters.model.Comparator;
 import com.lootfilters.ast.LeafCondition;
 import com.lootfilters.model.PluginTileItem;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 
+@Getter
+@EqualsAndHashCode(callSuper = false)
 @ToString
 public abstract class ComparatorCondition extends LeafCondition {
     private final int rhs;
@@ -3,10 +3,13 @@ package com.lootfilters.ast.leaf;
 import com.lootfilters.LootFiltersPlugin;
 import com.lootfilters.ast.LeafCondition;
 import com.lootfilters.model.PluginTileItem;
+import com.lootfilters.util.IntSet;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
+import java.util.LinkedHashSet;
 import java.util.List;
 
 @Getter
@@ -15,16 +18,22 @@ import java.util.List;
 public class ItemIdCondition extends LeafCondition {
     private final List<Integer> ids;
 
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final IntSet idSet;
+
     public ItemIdCondition(List<Integer> ids) {
-        this.ids = ids;
+        this.ids = List.copyOf(new LinkedHashSet<>(ids));
+        this.idSet = IntSet.of(this.ids);
     }
 
     public ItemIdCondition(int id) {
-        this.ids = List.of(id);
+        this(List.of(id));
     }
 
     @Override
     public boolean test(LootFiltersPlugin plugin, PluginTileItem item) {
-        return ids.stream().anyMatch(it -> item.getId() == it);
+        return idSet.contains(item.getId());
     }
 }
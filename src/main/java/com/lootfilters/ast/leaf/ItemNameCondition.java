@@ -3,47 +3,36 @@ package com.lootfilters.ast.leaf;
 import com.lootfilters.LootFiltersPlugin;
 import com.lootfilters.ast.LeafCondition;
 import com.lootfilters.model.PluginTileItem;
+import com.lootfilters.util.NameMatcher;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 
 import java.util.List;
 
-import static com.lootfilters.util.TextUtil.isInfixWildcard;
-
+@Getter
 @EqualsAndHashCode(callSuper = false)
 @ToString
 public class ItemNameCondition extends LeafCondition {
     private final List<String> names;
 
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final NameMatcher matcher;
+
     public ItemNameCondition(List<String> names) {
         this.names = names;
+        this.matcher = NameMatcher.compile(names);
     }
 
     public ItemNameCondition(String name) {
-        this.names = List.of(name);
+        this(List.of(name));
     }
 
     @Override
     public boolean test(LootFiltersPlugin plugin, PluginTileItem item) {
-        return names.stream().anyMatch(it -> test(item.getName(), it));
-    }
-
-    private boolean test(String name, String target) {
-        if (target.equals("*")) {
-            return true;
-        } else if (target.startsWith("*") && target.endsWith("*")) {
-            return name.toLowerCase().contains(target.toLowerCase().substring(1, target.length() - 1));
-        } else if (target.startsWith("*")) {
-            return name.toLowerCase().endsWith(target.toLowerCase().substring(1));
-        } else if (target.endsWith("*")) {
-            return name.toLowerCase().startsWith(target.toLowerCase().substring(0, target.length() - 1));
-        } else if (isInfixWildcard(target)) {
-            var lowercase = name.toLowerCase();
-            var index = target.indexOf('*');
-            var before = target.substring(0, index).toLowerCase();
-            var after = target.substring(index + 1).toLowerCase();
-            return lowercase.startsWith(before) && lowercase.endsWith(after);
-        }
-        return name.equalsIgnoreCase(target);
+        return matcher.matches(item.getLowercaseName());
     }
 }
@@ -4,8 +4,10 @@ import com.lootfilters.LootFiltersPlugin;
 import com.lootfilters.ast.LeafCondition;
 import com.lootfilters.model.PluginTileItem;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 
+@Getter
 @EqualsAndHashCode(callSuper = false)
 @ToString
 public class ItemNotedCondition extends LeafCondition {
@@ -6,7 +6,7 @@ import com.lootfilters.model.PluginTileItem;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
-@EqualsAndHashCode(callSuper = false)
+@EqualsAndHashCode(callSuper = true)
 @ToString(callSuper = true)
 public class ItemQuantityCondition extends ComparatorCondition {
     public ItemQuantityCondition(int value, Comparator cmp) {
@@ -5,9 +5,11 @@ import com.lootfilters.model.Comparator;
 import com.lootfilters.model.ValueType;
 import com.lootfilters.model.PluginTileItem;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 
-@EqualsAndHashCode(callSuper = false)
+@Getter
+@EqualsAndHashCode(callSuper = true)
 @ToString(callSuper = true)
 public class ItemValueCondition extends ComparatorCondition {
     private final ValueType valueType;
@@ -3,9 +3,8 @@ package com.lootfilters.lang;
 import lombok.RequiredArgsConstructor;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import static com.lootfilters.util.TextUtil.isLegalIdent;
 import static com.lootfilters.util.TextUtil.isNumeric;
@@ -15,36 +14,15 @@ import static com.lootfilters.util.TextUtil.isNumeric;
 // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
 @RequiredArgsConstructor
 public class Lexer {
-    private static final LinkedHashMap<String, Token.Type> STATICS = new LinkedHashMap<>() {{
-        put("\\\n", Token.Type.WHITESPACE);
-        put("#define", Token.Type.PREPROC_DEFINE);
-        put("apply", Token.Type.APPLY);
-        put("false", Token.Type.FALSE);
-        put("true", Token.Type.TRUE);
-        put("meta", Token.Type.META);
-        put("rule", Token.Type.RULE);
-        put("if", Token.Type.IF);
-        put("&&", Token.Type.OP_AND);
-        put("||", Token.Type.OP_OR);
-        put(">=", Token.Type.OP_GTEQ);
-        put("<=", Token.Type.OP_LTEQ);
-        put("==", Token.Type.OP_EQ);
-        put("!", Token.Type.OP_NOT);
-        put(">", Token.Type.OP_GT);
-        put("<", Token.Type.OP_LT);
-        put(";", Token.Type.STMT_END);
-        put(":", Token.Type.COLON);
-        put("=", Token.Type.ASSIGN);
-        put(",", Token.Type.COMMA);
-        put("(", Token.Type.EXPR_START);
-        put(")", Token.Type.EXPR_END);
-        put("{", Token.Type.BLOCK_START);
-        put("}", Token.Type.BLOCK_END);
-        put("[", Token.Type.LIST_START);
-        put("]", Token.Type.LIST_END);
-        put("\n", Token.Type.NEWLINE);
-        put("\r", Token.Type.NEWLINE);
-    }};
+    // keywords are only recognized as whole identifiers
+    private static final Map<String, Token.Type> KEYWORDS = Map.of(
+            "apply", Token.Type.APPLY,
+            "false", Token.Type.FALSE,
+            "true", Token.Type.TRUE,
+            "meta", Token.Type.META,
+            "rule", Token.Type.RULE,
+            "if", Token.Type.IF
+    );
 
     private final String inputName;
     private final String input;
@@ -77,29 +55,80 @@ public class Lexer {
             }
         }
 
-        return tokens.stream() // un-map escaped newlines
-                .map(it -> it.getValue().equals("\\\n") ? new Token(Token.Type.WHITESPACE, "", it.getLocation()) : it)
-                .collect(Collectors.collectingAndThen(Collectors.toList(), TokenStream::new));
+        return new TokenStream(tokens);
     }
 
+    // operators and punctuation, dispatched on the first character
     private boolean tokenizeStatic() {
-        for (var entry : STATICS.entrySet()) {
-            var value = entry.getKey();
-            var type = entry.getValue();
-            if (input.startsWith(value, offset)) {
-                tokens.add(new Token(type, value, currentLocation()));
-                currentLineOffset += value.length();
-                offset += value.length();
-                // Checking for \n here captures both escaped and unescaped newlines
-                // allowing us to properly track position within newline-escaped macros
-                if (value.endsWith("\n")) {
-                    currentLineOffset = 1;
-                    currentLineNumber += 1;
-                }
-                return true;
-            }
+        switch (input.charAt(offset)) {
+            case '\\': return tokenizeEscapedNewline();
+            case '#': return tokenizeStatic("#define", Token.Type.PREPROC_DEFINE);
+            case '&': return tokenizeStatic("&&", Token.Type.OP_AND);
+            case '|': return tokenizeStatic("||", Token.Type.OP_OR);
+            case '>': return tokenizeStatic(">=", Token.Type.OP_GTEQ) || tokenizeStatic(">", Token.Type.OP_GT);
+            case '<': return tokenizeStatic("<=", Token.Type.OP_LTEQ) || tokenizeStatic("<", Token.Type.OP_LT);
+            case '=': return tokenizeStatic("==", Token.Type.OP_EQ) || tokenizeStatic("=", Token.Type.ASSIGN);
+            case '!': return tokenizeStatic("!", Token.Type.OP_NOT);
+            case ';': return tokenizeStatic(";", Token.Type.STMT_END);
+            case ':': return tokenizeStatic(":", Token.Type.COLON);
+            case ',': return tokenizeStatic(",", Token.Type.COMMA);
+            case '(': return tokenizeStatic("(", Token.Type.EXPR_START);
+            case ')': return tokenizeStatic(")", Token.Type.EXPR_END);
+            case '{': return tokenizeStatic("{", Token.Type.BLOCK_START);
+            case '}': return tokenizeStatic("}", Token.Type.BLOCK_END);
+            case '[': return tokenizeStatic("[", Token.Type.LIST_START);
+            case ']': return tokenizeStatic("]", Token.Type.LIST_END);
+            case '\n':
+            case '\r': return tokenizeNewline();
+            default: return false;
+        }
+    }
+
+    private boolean tokenizeStatic(String value, Token.Type type) {
+        if (!input.startsWith(value, offset)) {
+            return false;
         }
-        return false;
+
+        addToken(type, value, offset, offset + value.length());
+        currentLineOffset += value.length();
+        offset += value.length();
+        return true;
+    }
+
+    // \r\n and a lone \r are both read as \n, so sources don't need their line endings normalized beforehand
+    private boolean tokenizeNewline() {
+        var end = offset + newlineLength(offset);
+        addToken(Token.Type.NEWLINE, "\n", offset, end);
+        offset = end;
+        currentLineOffset = 1;
+        currentLineNumber += 1;
+        return true;
+    }
+
+    // escaped newlines are just whitespace to the parser, but we still need to track position within newline-escaped
+    // macros
+    private boolean tokenizeEscapedNewline() {
+        var length = offset + 1 < input.length() ? newlineLength(offset + 1) : 0;
+        if (length == 0) {
+            return false;
+        }
+
+        addToken(Token.Type.WHITESPACE, "", offset, offset + 1 + length);
+        offset += 1 + length;
+        currentLineOffset = 1;
+        currentLineNumber += 1;
+        return true;
+    }
+
+    // length of the line ending at i, 0 if there isn't one
+    private int newlineLength(int i) {
+        var ch = input.charAt(i);
+        if (ch == '\n') {
+            return 1;
+        } else if (ch == '\r') {
+            return i + 1 < input.length() && input.charAt(i + 1) == '\n' ? 2 : 1;
+        }
+        return 0;
     }
 
     private boolean tokenizeComment() {
@@ -111,13 +140,13 @@ public class Lexer {
             return false;
         }
 
-        var lineEnd = input.indexOf('\n', offset);
-        var text = lineEnd > -1
-                ? input.substring(offset, lineEnd)
-                : input.substring(offset);
-        tokens.add(new Token(Token.Type.COMMENT, text, currentLocation()));
-        currentLineOffset += text.length();
-        offset += text.length();
+        var end = offset + 2;
+        while (end < input.length() && input.charAt(end) != '\n' && input.charAt(end) != '\r') {
+            ++end;
+        }
+        addToken(Token.Type.COMMENT, null, offset, end);
+        currentLineOffset += end - offset;
+        offset = end;
         return true;
     }
 
@@ -131,11 +160,10 @@ public class Lexer {
         for (var i = offset + 2; i < input.length(); ++i) {
             if (input.startsWith("*/", i)) {
                 currentLineOffset += 2;
-                var text = input.substring(offset, i + 2);
-                tokens.add(new Token(Token.Type.COMMENT, text, currentLocation()));
-                offset += text.length();
+                addToken(Token.Type.COMMENT, null, offset, i + 2);
+                offset = i + 2;
                 return true;
-            } else if (input.charAt(i) == '\n') {
+            } else if (input.charAt(i) == '\n' || input.charAt(i) == '\r' && !input.startsWith("\n", i + 1)) {
                 ++currentLineNumber;
                 currentLineOffset = 1;
             } else {
@@ -147,71 +175,55 @@ public class Lexer {
     }
 
     private void tokenizeWhitespace() {
-        for (int i = offset; i < input.length(); ++i) {
-            if (!isTokenWhitespace(input.charAt(i))) {
-                var ws = input.substring(offset, i);
-                tokens.add(new Token(Token.Type.WHITESPACE, ws, currentLocation()));
-                currentLineOffset += i - offset;
-                offset += i - offset;
-                return;
-            }
+        var end = offset;
+        while (end < input.length() && isTokenWhitespace(input.charAt(end))) {
+            ++end;
         }
-        var ws = input.substring(offset);
-        tokens.add(new Token(Token.Type.WHITESPACE, ws, currentLocation()));
-        currentLineOffset += ws.length();
-        offset = input.length();
+
+        addToken(Token.Type.WHITESPACE, null, offset, end);
+        currentLineOffset += end - offset;
+        offset = end;
     }
 
     private void tokenizeLiteralInt() {
-        var start = input.charAt(offset) == '-' ? offset + 1 : offset;
-        for (int i = start; i < input.length(); ++i) {
-            if (input.charAt(i) == '_') {
-                continue;
-            }
-            if (!isNumeric(input.charAt(i))) {
-                var literal = input.substring(offset, i);
-                tokens.add(Token.intLiteral(literal, currentLocation()));
-                currentLineOffset += literal.length();
-                offset += literal.length();
-                return;
-            }
+        var end = input.charAt(offset) == '-' ? offset + 1 : offset;
+        while (end < input.length() && (input.charAt(end) == '_' || isNumeric(input.charAt(end)))) {
+            ++end;
         }
-        tokens.add(Token.intLiteral(input.substring(offset), currentLocation()));
-        currentLineOffset += input.substring(offset).length();
-        offset = input.length();
+
+        addToken(Token.Type.LITERAL_INT, null, offset, end);
+        currentLineOffset += end - offset;
+        offset = end;
     }
 
     private void tokenizeLiteralString() throws TokenizeException {
-        for (int i = offset + 1; i < input.length(); ++i) {
-            if (input.charAt(i) == '"') {
-                var literal = input.substring(offset + 1, i);
-                // for quotes, which the captured literal omits
-                tokens.add(Token.stringLiteral(literal, currentLocation()));
-                currentLineOffset += literal.length() + 2;
-                offset += literal.length() + 2;
-                return;
-            }
+        var close = input.indexOf('"', offset + 1);
+        if (close == -1) {
+            throw new TokenizeException("unterminated string literal");
         }
-        throw new TokenizeException("unterminated string literal");
+
+        // the value omits the enclosing quotes
+        addToken(Token.Type.LITERAL_STRING, null, offset + 1, close);
+        currentLineOffset += close + 1 - offset;
+        offset = close + 1;
     }
 
     private void tokenizeIdentifier() {
-        for (int i = offset; i < input.length(); ++i) {
-            if (!isLegalIdent(input.charAt(i))) {
-                var ident = input.substring(offset, i);
-                tokens.add(Token.identifier(ident, currentLocation()));
-                currentLineOffset += ident.length();
-                offset += ident.length();
-                return;
-            }
+        var end = offset;
+        while (end < input.length() && isLegalIdent(input.charAt(end))) {
+            ++end;
         }
-        tokens.add(Token.identifier(input.substring(offset), currentLocation()));
-        currentLineOffset += input.substring(offset).length();
-        offset = input.length();
+
+        var ident = input.substring(offset, end); // always read by the preprocessor, no point deferring it
+        var keyword = KEYWORDS.get(ident);
+        addToken(keyword != null ? keyword : Token.Type.IDENTIFIER, ident, offset, end);
+        currentLineOffset += end - offset;
+        offset = end;
     }
 
-    private Location currentLocation() {
-        return new Location(inputName, currentLineNumber, currentLineOffset);
+    // value is materialized from input[start, end) if null, location always points at the current position
+    private void addToken(Token.Type type, String value, int start, int end) {
+        tokens.add(new Token(type, value, inputName, input, start, end, currentLineNumber, currentLineOffset));
     }
 
     private static boolean isTokenWhitespace(char c) { // newlines are tokenized separately
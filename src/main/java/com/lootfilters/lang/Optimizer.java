@@ -0,0 +1,151 @@
+package com.lootfilters.lang;
+
+import com.lootfilters.FilterRule;
+import com.lootfilters.LootFilter;
+import com.lootfilters.ast.AndCondition;
+import com.lootfilters.ast.Condition;
+import com.lootfilters.ast.NotCondition;
+import com.lootfilters.ast.OrCondition;
+import com.lootfilters.ast.leaf.AccountTypeCondition;
+import com.lootfilters.ast.leaf.AreaCondition;
+import com.lootfilters.ast.leaf.ConstCondition;
+import com.lootfilters.ast.leaf.ItemIdCondition;
+import com.lootfilters.ast.leaf.ItemNameCondition;
+import com.lootfilters.ast.leaf.ItemNotedCondition;
+import com.lootfilters.ast.leaf.ItemOwnershipCondition;
+import com.lootfilters.ast.leaf.ItemQuantityCondition;
+import com.lootfilters.ast.leaf.ItemStackableCondition;
+import com.lootfilters.ast.leaf.ItemTradeableCondition;
+import com.lootfilters.ast.leaf.ItemValueCondition;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Optimizer simplifies the conditions of a parsed filter. Macro expansion in particular tends to leave behind things
+ * like {@code true && X}, {@code !!X} or deeply nested and/or chains, which this folds away:
+ * <ul>
+ *     <li>constants are folded through and/or/not</li>
+ *     <li>nested and/or chains of the same operator are flattened, and single-operand ones are unwrapped</li>
+ *     <li>double negation is removed</li>
+ *     <li>duplicate operands of an and/or are removed</li>
+ *     <li>rules whose condition folds to false are dropped entirely</li>
+ *     <li>operands of an and/or are reordered so that cheap checks run first</li>
+ * </ul>
+ * Conditions have no side effects, so none of this changes which rules match an item.
+ */
+@RequiredArgsConstructor
+public class Optimizer {
+    private final LootFilter filter;
+
+    public LootFilter optimize() {
+        return filter.toBuilder()
+                .setRules(optimize(filter.getRules()))
+                .build();
+    }
+
+    public static List<FilterRule> optimize(List<FilterRule> parsed) {
+        var rules = new ArrayList<FilterRule>();
+        for (var rule : parsed) {
+            var cond = simplify(rule.getCond());
+            if (isConst(cond, false)) {
+                continue;
+            }
+            rules.add(cond == rule.getCond()
+                    ? rule
+                    : new FilterRule(cond, rule.getDisplay(), rule.isTerminal(), rule.getSourceLine()));
+        }
+        return rules;
+    }
+
+    private static Condition simplify(Condition cond) {
+        if (cond instanceof NotCondition) {
+            return simplifyNot((NotCondition) cond);
+        } else if (cond instanceof AndCondition) {
+            return simplifyAndOr(((AndCondition) cond).getRules(), true);
+        } else if (cond instanceof OrCondition) {
+            return simplifyAndOr(((OrCondition) cond).getRules(), false);
+        }
+        return cond;
+    }
+
+    private static Condition simplifyNot(NotCondition cond) {
+        var inner = simplify(cond.getInner());
+        if (inner instanceof ConstCondition) {
+            return new ConstCondition(!((ConstCondition) inner).isTarget());
+        } else if (inner instanceof NotCondition) {
+            return ((NotCondition) inner).getInner();
+        }
+        return inner == cond.getInner() ? cond : new NotCondition(inner);
+    }
+
+    // an and with a false operand (or an or with a true one) is decided, and the opposite constant is the identity
+    private static Condition simplifyAndOr(List<Condition> operands, boolean isAnd) {
+        var flattened = new LinkedHashSet<Condition>();
+        for (var operand : operands) {
+            var simplified = simplify(operand);
+            if (isConst(simplified, !isAnd)) {
+                return simplified;
+            } else if (isConst(simplified, isAnd)) {
+                continue;
+            }
+
+            var nested = isAnd
+                    ? simplified instanceof AndCondition ? ((AndCondition) simplified).getRules() : null
+                    : simplified instanceof OrCondition ? ((OrCondition) simplified).getRules() : null;
+            flattened.addAll(nested != null ? nested : List.of(simplified));
+        }
+
+        if (flattened.isEmpty()) {
+            return new ConstCondition(isAnd);
+        } else if (flattened.size() == 1) {
+            return flattened.iterator().next();
+        }
+
+        // stable, so equal-cost operands keep the order they were written in
+        var sorted = new ArrayList<>(flattened);
+        sorted.sort(Comparator.comparingInt(Optimizer::costOf));
+        return isAnd ? new AndCondition(sorted) : new OrCondition(sorted);
+    }
+
+    // rough relative cost of evaluating a condition against one item
+    private static int costOf(Condition cond) {
+        if (cond instanceof NotCondition) {
+            return costOf(((NotCondition) cond).getInner());
+        } else if (cond instanceof AndCondition || cond instanceof OrCondition) {
+            var rules = cond instanceof AndCondition
+                    ? ((AndCondition) cond).getRules()
+                    : ((OrCondition) cond).getRules();
+            var cost = 0;
+            for (var rule : rules) {
+                cost += costOf(rule);
+            }
+            return cost;
+        } else if (cond instanceof ConstCondition) {
+            return 0;
+        } else if (cond instanceof ItemIdCondition
+                || cond instanceof ItemOwnershipCondition
+                || cond instanceof ItemQuantityCondition
+                || cond instanceof ItemNotedCondition
+                || cond instanceof ItemStackableCondition
+                || cond instanceof ItemTradeableCondition) {
+            return 1; // plain field reads
+        } else if (cond instanceof ItemNameCondition) {
+            // exact names are a hash lookup, wildcards walk the name
+            var hasWildcard = ((ItemNameCondition) cond).getNames().stream().anyMatch(it -> it.contains("*"));
+            return hasWildcard ? 4 : 2;
+        } else if (cond instanceof AreaCondition || cond instanceof AccountTypeCondition) {
+            return 2;
+        } else if (cond instanceof ItemValueCondition) {
+            return 3; // price lookups
+        }
+        return 4;
+    }
+
+    private static boolean isConst(Condition cond, boolean target) {
+        return cond instanceof ConstCondition && ((ConstCondition) cond).isTarget() == target;
+    }
+}
@@ -68,6 +68,11 @@ public class Parser {
     private final LootFilter.Builder builder = LootFilter.builder();
 
     public LootFilter parse() throws ParseException {
+        return parseUnbuilt().build();
+    }
+
+    // for callers that merge the parsed rules into a larger filter, which would otherwise build this one for nothing
+    public LootFilter.Builder parseUnbuilt() throws ParseException {
         while (tokens.isNotEmpty()) {
             var tok = tokens.take();
             if (tok.is(META)) {
@@ -80,7 +85,7 @@ public class Parser {
                 throw new ParseException("unexpected token", tok);
             }
         }
-        return builder.build();
+        return builder;
     }
 
     private void parseMeta() {
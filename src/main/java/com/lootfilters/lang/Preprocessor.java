@@ -1,49 +1,91 @@
 package com.lootfilters.lang;
 
-import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeMap;
 
-import static com.lootfilters.util.CollectionUtil.append;
 import static com.lootfilters.util.TextUtil.quote;
 
 // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
 // !! DO NOT add features to the RS2F language without consulting Rikten X first. !!
 // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
+//
+// A define applies to the whole input regardless of where it appears, so preprocessing takes two passes: the first
+// records every define, and the second strips them out and expands macros. The second pass is lazy, tokens are only
+// stripped and expanded as whoever is reading the output pulls them.
 @RequiredArgsConstructor
 public class Preprocessor {
     private final TokenStream tokens;
 
     private final Map<String, Define> defines = new HashMap<>();
-    private final List<Token> preproc = new ArrayList<>(); // pre-expansion w/ all preproc lines removed
 
     public TokenStream preprocess() throws PreprocessException {
-        while (tokens.isNotEmpty()) {
-            var next = tokens.take(true);
-            if (next.is(Token.Type.PREPROC_DEFINE)) {
-                parseDefine();
-            } else {
-                preproc.add(next);
-                if (!next.is(Token.Type.NEWLINE)) {
-                    preproc.addAll(tokens.takeLine());
-                    preproc.add(new Token(Token.Type.NEWLINE, "\n", Location.UNKNOWN));
-                }
+        var scan = new Stripped(tokens.fork(), true);
+        while (scan.next() != null) {
+            // only here to record defines
+        }
+        return new TokenStream(new Expansion(new TokenStream(new Stripped(tokens, false)), null));
+    }
+
+    /**
+     * Strips every #define out of the stream, recording it for later expansion, and returns the remaining tokens.
+     */
+    public List<Token> collectDefines() throws PreprocessException {
+        return drain(new Stripped(tokens, true));
+    }
+
+    /**
+     * Expands macros in the given tokens using the defines recorded by collectDefines. Since expansion never looks past
+     * a balanced macro invocation, any run of tokens that doesn't split one can be expanded on its own.
+     */
+    public List<Token> expand(List<Token> tokens) throws PreprocessException {
+        return drain(new Expansion(new TokenStream(tokens), null));
+    }
+
+    /**
+     * Describes every define that the given tokens could expand through, directly or via other defines, as well as
+     * every identifier that ISN'T a define. Two runs of tokens with the same text and the same description expand
+     * identically.
+     */
+    public String describeDefinesUsedBy(List<Token> tokens) {
+        var used = new TreeMap<String, Define>();
+        var pending = new ArrayDeque<>(tokens);
+        while (!pending.isEmpty()) {
+            var token = pending.pop();
+            if (!token.is(Token.Type.IDENTIFIER) || used.containsKey(token.getValue())) {
+                continue;
+            }
+
+            var define = defines.get(token.getValue());
+            used.put(token.getValue(), define);
+            if (define != null) {
+                pending.addAll(define.value);
             }
         }
 
-        return new TokenStream(expandDefines(new ArrayList<>(), new TokenStream(preproc)));
+        var description = new StringBuilder();
+        for (var entry : used.entrySet()) {
+            description.append(entry.getKey());
+            if (entry.getValue() != null) {
+                description.append(entry.getValue().describe());
+            }
+            description.append(";");
+        }
+        return description.toString();
     }
 
-    private void parseDefine() {
+    private Define parseDefine(TokenStream tokens) {
         var nameToken = tokens.takeExpect(Token.Type.IDENTIFIER);
         var name = nameToken.getValue();
         var params = tokens.peek().is(Token.Type.EXPR_START)
-                ? parseDefineParams() : null;
+                ? parseDefineParams(tokens) : null;
         if (params != null && params.isEmpty()) {
             throw new PreprocessException("#define " + quote(name) + " has empty param list found at " + nameToken.getLocation().toString());
         }
@@ -51,10 +93,10 @@ public class Preprocessor {
         if (!line.isEmpty() && line.get(0).isWhitespace()) {
             line.remove(0);
         }
-        defines.put(name, new Define(name, params, line));
+        return new Define(name, params, line);
     }
 
-    private List<String> parseDefineParams() {
+    private static List<String> parseDefineParams(TokenStream tokens) {
         var params = new ArrayList<String>();
         tokens.takeExpect(Token.Type.EXPR_START);
         while (tokens.isNotEmpty()) {
@@ -71,40 +113,34 @@ public class Preprocessor {
         throw new PreprocessException("unterminated define param list");
     }
 
-    private List<Token> expandDefines(List<String> visited, TokenStream tokens) {
-        var postproc = new ArrayList<Token>();
-        while (tokens.isNotEmpty()) {
-            var token = tokens.take(true);
-            if (!visited.contains(token.getValue()) && token.is(Token.Type.IDENTIFIER) && defines.containsKey(token.getValue())) {
-                var define = defines.get(token.getValue());
-                if (define.isParameterized()) {
-                    var args = tokens.takeArgList();
-                    if (args.size() != define.params.size()) {
-                        throw new PreprocessException(String.format("invalid macro expansion of %s (wanted %d args, got %d)",
-                                define.name, define.params.size(), args.size()));
-                    }
-                    postproc.addAll(expandParameterizedDefine(append(visited, define.name), define, args, token.getLocation()));
-                } else {
-                    var defineTokens = define.value.stream().map(
-                                    macroToken -> {
-                                        // the location data for this token is:
-                                        // 1. the location of the original token that will be replaced
-                                        // 2. with the macroSourceLocation for the replacementToken we'll be inserting
-                                        var newLocation = token.getLocation().withMacroSourceLocation(macroToken.getLocation().withMacroName(define.name));
-                                        // create a copy of the macro location with the updated location
-                                        return macroToken.withLocation(newLocation);
-                                    })
-                            .collect(Collectors.toList());
-                    postproc.addAll(expandDefines(append(visited, define.name), new TokenStream(defineTokens)));
-                }
-            } else {
-                postproc.add(token);
-            }
+    private static List<Token> drain(TokenSource source) {
+        var tokens = new ArrayList<Token>();
+        for (var next = source.next(); next != null; next = source.next()) {
+            tokens.add(next);
+        }
+        return tokens;
+    }
+
+    // the location data for each token is:
+    // 1. the location of the original token that will be replaced
+    // 2. with the macroSourceLocation for the replacement token we'll be inserting
+    private static List<Token> rebaseDefine(Define define, Location invocation) {
+        var rebased = new ArrayList<Token>(define.value.size());
+        for (var macroToken : define.value) {
+            rebased.add(macroToken.withLocation(invocation.withMacroSourceLocation(macroToken.getLocation().withMacroName(define.name))));
+        }
+        return rebased;
+    }
+
+    // the full expansion of a non-parameterized define as if it were invoked at the top level, computed once
+    private List<Token> expandedFrom(Define define) {
+        if (define.expansion == null) {
+            define.expansion = drain(new Expansion(new TokenStream(rebaseDefine(define, Location.UNKNOWN)), define.name));
         }
-        return postproc;
+        return define.expansion;
     }
 
-    private List<Token> expandParameterizedDefine(List<String> visited, Define define, List<TokenStream> args, Location macroInvocation) {
+    private static List<Token> substituteParams(Define define, List<TokenStream> args, Location macroInvocation) {
         var expanded = new ArrayList<Token>();
         for (var defineToken : define.value) {
             var token = defineToken.withLocation(macroInvocation.withMacroSourceLocation(defineToken.getLocation().withMacroName(define.name)));
@@ -122,22 +158,155 @@ public class Preprocessor {
             }
             if (paramIndex > -1) {
                 var arg = args.get(paramIndex);
-                expanded.addAll(arg.getTokens());
+                arg.copyTo(expanded);
             } else {
                 expanded.add(token);
             }
         }
-        return expandDefines(visited, new TokenStream(expanded));
+        return expanded;
     }
 
-    @AllArgsConstructor
+    // the input a line at a time, with every #define line dropped and optionally recorded
+    private class Stripped implements TokenSource {
+        private final TokenStream tokens;
+        private final boolean record;
+        private final ArrayDeque<Token> line = new ArrayDeque<>();
+
+        Stripped(TokenStream tokens, boolean record) {
+            this.tokens = tokens;
+            this.record = record;
+        }
+
+        @Override
+        public Token next() {
+            while (line.isEmpty()) {
+                if (!tokens.isNotEmpty()) {
+                    return null;
+                }
+
+                var next = tokens.take(true);
+                if (next.is(Token.Type.PREPROC_DEFINE)) {
+                    var define = parseDefine(tokens);
+                    if (record) {
+                        defines.put(define.name, define);
+                    }
+                } else {
+                    line.add(next);
+                    if (!next.is(Token.Type.NEWLINE)) {
+                        line.addAll(tokens.takeLine());
+                        line.add(new Token(Token.Type.NEWLINE, "\n", Location.UNKNOWN));
+                    }
+                }
+            }
+            return line.poll();
+        }
+    }
+
+    // Macro expansion, one token at a time. Each frame is the stream of tokens at one level of expansion along with the
+    // define it's expanding, and the defines of every open frame are excluded from expansion to stop recursion.
+    private class Expansion implements TokenSource {
+        private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+        private final Set<String> visited = new HashSet<>();
+
+        Expansion(TokenStream tokens, String define) {
+            push(tokens, define);
+        }
+
+        @Override
+        public Token next() {
+            while (!frames.isEmpty()) {
+                var frame = frames.peek();
+                if (frame.cached != null) {
+                    if (frame.cachedIndex < frame.cached.size()) {
+                        return frame.cached.get(frame.cachedIndex++).rebase(frame.invocation);
+                    }
+                    frames.pop();
+                    continue;
+                }
+                if (!frame.tokens.isNotEmpty()) {
+                    frames.pop();
+                    visited.remove(frame.define);
+                    continue;
+                }
+
+                var token = frame.tokens.take(true);
+                var define = token.is(Token.Type.IDENTIFIER) && !visited.contains(token.getValue())
+                        ? defines.get(token.getValue()) : null;
+                if (define == null) {
+                    return token;
+                }
+
+                if (define.isParameterized()) {
+                    var args = frame.tokens.takeArgList();
+                    if (args.size() != define.params.size()) {
+                        throw new PreprocessException(String.format("invalid macro expansion of %s (wanted %d args, got %d)",
+                                define.name, define.params.size(), args.size()));
+                    }
+                    push(new TokenStream(substituteParams(define, args, token.getLocation())), define.name);
+                } else if (visited.isEmpty()) {
+                    // at the top level nothing else is being expanded, so this expands the same way every time
+                    frames.push(new Frame(expandedFrom(define), token.getLocation()));
+                } else {
+                    push(new TokenStream(rebaseDefine(define, token.getLocation())), define.name);
+                }
+            }
+            return null;
+        }
+
+        private void push(TokenStream tokens, String define) {
+            frames.push(new Frame(tokens, define));
+            if (define != null) {
+                visited.add(define);
+            }
+        }
+    }
+
+    private static class Frame {
+        final TokenStream tokens;
+        final String define;
+
+        // a memoized top-level expansion instead, which only needs rebasing onto the invocation
+        final List<Token> cached;
+        final Location invocation;
+        int cachedIndex;
+
+        Frame(TokenStream tokens, String define) {
+            this.tokens = tokens;
+            this.define = define;
+            this.cached = null;
+            this.invocation = null;
+        }
+
+        Frame(List<Token> cached, Location invocation) {
+            this.tokens = null;
+            this.define = null;
+            this.cached = cached;
+            this.invocation = invocation;
+        }
+    }
+
+    @RequiredArgsConstructor
     private static class Define {
         final String name;
         final List<String> params;
         final List<Token> value;
 
+        private String description;
+        private List<Token> expansion;
+
         boolean isParameterized() {
             return params != null;
         }
+
+        String describe() {
+            if (description == null) {
+                var str = new StringBuilder(isParameterized() ? params.toString() : "").append("=");
+                for (var token : value) {
+                    str.append(token.getType()).append(' ').append(token.getValue()).append(' ');
+                }
+                description = str.toString();
+            }
+            return description;
+        }
     }
 }
@@ -1,12 +1,10 @@
 package com.lootfilters.lang;
 
-import java.util.zip.GZIPInputStream;
 import lombok.Getter;
 
 import java.io.IOException;
 import java.io.InputStream;
-
-import static com.lootfilters.util.TextUtil.normalizeCrlf;
+import java.nio.charset.StandardCharsets;
 
 public class Sources {
     @Getter private static String preamble;
@@ -23,15 +21,13 @@ public class Sources {
         }
 	}
 
+    // line endings are left as-is, the lexer handles them
     public static String loadScriptResource(InputStream in) throws IOException {
-        return normalizeCrlf(new String(in.readAllBytes()));
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
     }
 
-	public static String loadScriptResource(Class<?> clazz, String name, boolean gzip) throws IOException {
-		try (
-			var inner = clazz.getResourceAsStream(name);
-			var stream = gzip ? new GZIPInputStream(inner) : inner;
-		) {
+	public static String loadScriptResource(Class<?> clazz, String name) throws IOException {
+		try (var stream = clazz.getResourceAsStream(name)) {
 			return loadScriptResource(stream);
 		}
 	}
@@ -1,13 +1,17 @@
 package com.lootfilters.lang;
 
-import lombok.RequiredArgsConstructor;
-import lombok.Value;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import net.runelite.client.util.ColorUtil;
 
 import java.awt.Color;
 
-@Value
-@RequiredArgsConstructor
+/**
+ * Token is a single lexical token. Tokens produced by the lexer are backed by a span of the source text and only
+ * materialize their value and location on first access, since most of them (whitespace, comments) never have either
+ * read.
+ */
+@EqualsAndHashCode
 public class Token {
     public enum Type {
         WHITESPACE, NEWLINE,
@@ -31,9 +35,58 @@ public class Token {
     public static Token stringLiteral(String value, Location location) { return new Token(Type.LITERAL_STRING, value, location); }
     public static Token identifier(String value, Location location) { return new Token(Type.IDENTIFIER, value, location); }
 
-    Type type;
-    String value;
-    Location location;
+    @Getter
+    private final Type type;
+    private String value;
+    private Location location;
+
+    // source span backing value and/or location when either hasn't been materialized yet
+    @EqualsAndHashCode.Exclude private final String sourceName;
+    @EqualsAndHashCode.Exclude private final String source;
+    @EqualsAndHashCode.Exclude private final int start;
+    @EqualsAndHashCode.Exclude private final int end;
+    @EqualsAndHashCode.Exclude private final int lineNumber;
+    @EqualsAndHashCode.Exclude private final int charNumber;
+    @EqualsAndHashCode.Exclude private final Location macroSourceLocation;
+
+    public Token(Type type, String value, Location location) {
+        this(type, value, location, null, null, 0, 0, 0, 0, null);
+    }
+
+    // value may be null, in which case it is taken from source[start, end) on first access
+    Token(Type type, String value, String sourceName, String source, int start, int end, int lineNumber, int charNumber) {
+        this(type, value, null, sourceName, source, start, end, lineNumber, charNumber, null);
+    }
+
+    private Token(Type type, String value, Location location, String sourceName, String source, int start, int end,
+                  int lineNumber, int charNumber, Location macroSourceLocation) {
+        this.type = type;
+        this.value = value;
+        this.location = location;
+        this.sourceName = sourceName;
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.lineNumber = lineNumber;
+        this.charNumber = charNumber;
+        this.macroSourceLocation = macroSourceLocation;
+    }
+
+    public String getValue() {
+        if (value == null && source != null) {
+            value = source.substring(start, end);
+        }
+        return value;
+    }
+
+    public Location getLocation() {
+        if (location == null && source != null) {
+            location = macroSourceLocation != null
+                    ? new Location(sourceName, lineNumber, charNumber).withMacroSourceLocation(macroSourceLocation)
+                    : new Location(sourceName, lineNumber, charNumber);
+        }
+        return location;
+    }
 
     public boolean is(Type type) {
         return this.type == type;
@@ -43,14 +96,14 @@ public class Token {
         if (type != Type.LITERAL_INT) {
             throw new ParseException("unexpected non-int token", this);
         }
-        return Integer.parseInt(value.replace("_", ""));
+        return Integer.parseInt(getValue().replace("_", ""));
     }
 
     public String expectString() {
         if (type != Type.LITERAL_STRING) {
             throw new ParseException("unexpected non-string token", this);
         }
-        return value;
+        return getValue();
     }
 
     public Color expectColor() {
@@ -58,7 +111,7 @@ public class Token {
             throw new ParseException("unexpected non-string token", this);
         }
 
-        var color = ColorUtil.fromHex(value);
+        var color = ColorUtil.fromHex(getValue());
         if (color == null) {
             throw new ParseException("unexpected non-color string", this);
         }
@@ -83,18 +136,32 @@ public class Token {
     }
 
     public Token withLocation(Location location) {
-        return new Token(type, value, location);
+        return new Token(type, value, location, sourceName, source, start, end, lineNumber, charNumber, macroSourceLocation);
+    }
+
+    /**
+     * Copies this token as if it were expanded from a macro invoked at the given location, i.e. at that location with
+     * the same macro source location this token already has. The new location is only built if it's read.
+     */
+    Token rebase(Location invocation) {
+        var macroSource = getLocation().getMacroSourceLocation();
+        if (source == null) {
+            return withLocation(invocation.withMacroSourceLocation(macroSource));
+        }
+        return new Token(type, value, null, invocation.getSourceName(), source, start, end,
+                invocation.getLineNumber(), invocation.getCharNumber(), macroSource);
     }
 
     @Override
     public String toString() {
         var str = "Token{type=" + type;
+        var value = getValue();
         return value != null && value.isEmpty()
                 ? str + "}"
-                : str + ",value=" + value + ", location=" + location.toString() + "}";
+                : str + ",value=" + value + ", location=" + getLocation().toString() + "}";
     }
 
     public String formatForException() {
-        return String.format("%s at %s", value, location.toString());
+        return String.format("%s at %s", getValue(), getLocation().toString());
     }
 }
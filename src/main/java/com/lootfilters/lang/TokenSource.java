@@ -0,0 +1,11 @@
+package com.lootfilters.lang;
+
+/**
+ * TokenSource produces tokens one at a time, on demand, for a TokenStream to consume.
+ */
+public interface TokenSource {
+    /**
+     * Returns the next token, or null once the source is exhausted.
+     */
+    Token next();
+}
@@ -1,56 +1,221 @@
 package com.lootfilters.lang;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
+import java.util.RandomAccess;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
- * TokenStream wraps a list of Tokens to expose retrieval APIs suitable for parsing.
+ * TokenStream wraps a list of Tokens to expose retrieval APIs suitable for parsing. A stream can also pull its tokens
+ * from a TokenSource as they're needed, in which case only the tokens between the read position and the furthest
+ * lookahead are held at any one time.
  */
 public class TokenStream {
+    // consumed tokens are only dropped in bulk, since removing from the front of the buffer means shifting the rest
+    private static final int COMPACT_THRESHOLD = 1024;
+
     private final List<Token> tokens;
+    private TokenSource source; // null for list-backed streams, and once the source has run out
     private int index = 0;
 
+    // Positions of the semantic tokens in a list-backed stream, indexed the first time it's navigated so that skipping
+    // whitespace and comments doesn't mean rescanning them on every peek. next is the first position at or after index.
+    // Streams taken from inside an expression hold nothing but semantic tokens, so they don't need one.
+    private int[] semantic;
+    private int next = 0;
+    private final boolean allSemantic;
+
     public TokenStream(List<Token> tokens) {
+        this(tokens, false);
+    }
+
+    public TokenStream(TokenSource source) {
+        this.tokens = new ArrayList<>();
+        this.source = source;
+        this.allSemantic = false;
+    }
+
+    private TokenStream(List<Token> tokens, boolean allSemantic) {
         this.tokens = tokens;
+        this.allSemantic = allSemantic;
+    }
+
+    /**
+     * Joins the remaining tokens of each stream, in order, into a single stream. The result is a view over the
+     * underlying token lists rather than a copy.
+     */
+    public static TokenStream concat(List<TokenStream> streams) {
+        if (streams.size() == 1) {
+            return streams.get(0);
+        }
+
+        var parts = new ArrayList<List<Token>>(streams.size());
+        for (var stream : streams) {
+            stream.fill();
+            parts.add(stream.tokens.subList(stream.index, stream.tokens.size()));
+        }
+        return new TokenStream(new ConcatList(parts));
     }
 
     /**
      * Returns a shallow copy of the token stream.
      */
     public List<Token> getTokens() {
+        fill();
         return new ArrayList<>(tokens.subList(index, tokens.size()));
     }
 
     /**
-     * Peek at the first token in the stream, ignoring whitespace, without consuming it.
+     * Appends the remaining tokens to the given list without consuming them.
      */
-    public Token peek() {
-        for (int i = index; i < tokens.size(); i++) {
-            var token = tokens.get(i);
-            if (token.isSemantic()) {
-				return token;
-			}
+    void copyTo(List<Token> out) {
+        fill();
+        for (var i = index; i < tokens.size(); ++i) {
+            out.add(tokens.get(i));
         }
+    }
 
-        return null;
+    /**
+     * Returns an independent stream over the remaining tokens, leaving this one where it is.
+     */
+    TokenStream fork() {
+        fill();
+        return new TokenStream(tokens.subList(index, tokens.size()), allSemantic);
+    }
+
+    // whether there's a token at buffer index i, pulling from the source up to it if need be
+    private boolean has(int i) {
+        while (i >= tokens.size() && source != null) {
+            var next = source.next();
+            if (next == null) {
+                source = null;
+                break;
+            }
+            tokens.add(next);
+        }
+        return i < tokens.size();
+    }
+
+    private void fill() {
+        has(Integer.MAX_VALUE);
+    }
+
+    private void advanceTo(int i) {
+        index = i;
+        if (allSemantic) {
+            next = index;
+        } else if (semantic != null) {
+            while (next < semantic.length && semantic[next] < index) {
+                ++next;
+            }
+        } else if (source != null && index >= COMPACT_THRESHOLD) {
+            tokens.subList(0, index).clear();
+            index = 0;
+        }
+    }
+
+    // whether semantic positions can be used, building them if need be - a stream still pulling from its source can't
+    // know them ahead of time
+    private boolean isIndexed() {
+        if (source != null) {
+            return false;
+        }
+        if (semantic == null && !allSemantic) {
+            var positions = new int[tokens.size()];
+            var count = 0;
+            for (var i = 0; i < positions.length; ++i) {
+                if (tokens.get(i).isSemantic()) {
+                    positions[count++] = i;
+                }
+            }
+            semantic = Arrays.copyOf(positions, count);
+
+            var at = Arrays.binarySearch(semantic, index);
+            next = at >= 0 ? at : -(at + 1);
+        }
+        return true;
+    }
+
+    private int semanticCount() {
+        return allSemantic ? tokens.size() : semantic.length;
+    }
+
+    private int tokenIndex(int position) {
+        return allSemantic ? position : semantic[position];
+    }
+
+    // buffer index of the first semantic token at or after index, -1 if there isn't one
+    private int nextSemantic() {
+        if (isIndexed()) {
+            return next < semanticCount() ? tokenIndex(next) : -1;
+        }
+        for (int i = index; has(i); i++) {
+            if (tokens.get(i).isSemantic()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // stream over the semantic tokens at positions [from, to), sharing this stream's tokens rather than copying them
+    private TokenStream slice(int from, int to) {
+        if (allSemantic && tokens instanceof SemanticSlice) {
+            var outer = (SemanticSlice) tokens;
+            return new TokenStream(new SemanticSlice(outer.tokens, outer.semantic, outer.from + from, outer.from + to), true);
+        }
+        return new TokenStream(new SemanticSlice(tokens, allSemantic ? null : semantic, from, to), true);
+    }
+
+    // position of the end token that balances the start token at position from
+    private int closingPosition(int from, Token.Type start, Token.Type end) {
+        var depth = 0;
+        for (var i = from; i < semanticCount(); ++i) {
+            var token = tokens.get(tokenIndex(i));
+            if (token.is(start)) {
+                ++depth;
+            } else if (token.is(end) && --depth == 0) {
+                return i;
+            }
+        }
+        throw new ParseException("unbalanced expression");
+    }
+
+    /**
+     * Peek at the first token in the stream, ignoring whitespace, without consuming it.
+     */
+    public Token peek() {
+        var i = nextSemantic();
+        return i > -1 ? tokens.get(i) : null;
     }
 
     /**
      * Consume the first token in the stream, optionally including whitespace.
      */
     public Token take(boolean includeWhitespace) {
-        for (int i = index; i < tokens.size(); i++) {
+        if (!includeWhitespace) {
+            var i = nextSemantic();
+            if (i == -1) {
+                advanceTo(tokens.size());
+                return null;
+            }
+
+            var next = tokens.get(i);
+            advanceTo(i + 1);
+            return next;
+        }
+
+        for (int i = index; has(i); i++) {
             var next = tokens.get(i);
             if (next.isSemantic() || includeWhitespace && next.isWhitespace()) {
-                index = i + 1;
+                advanceTo(i + 1);
                 return next;
             }
         }
 
-        index = tokens.size();
+        advanceTo(tokens.size());
         return null;
     }
 
@@ -66,7 +231,7 @@ public class TokenStream {
      * type.
      */
     public Token takeExpect(Token.Type expect, boolean includeWhitespace) {
-        if (tokens.isEmpty()) {
+        if (!has(index)) {
             throw new ParseException("unexpected end of token stream");
         }
 
@@ -107,7 +272,7 @@ public class TokenStream {
         var line = new ArrayList<Token>();
         int i;
 
-        for (i = index; i < tokens.size(); ++i) {
+        for (i = index; has(i); ++i) {
             var next = tokens.get(i);
             if (next.is(Token.Type.NEWLINE)) {
                 ++i;
@@ -116,7 +281,7 @@ public class TokenStream {
             line.add(next);
         }
 
-        index = i;
+        advanceTo(i);
         return line;
     }
 
@@ -138,45 +303,53 @@ public class TokenStream {
      * The consumer will be invoked with both the starting and ending enclosing tokens.
      */
     public void walkExpression(Token.Type start, Token.Type end, Consumer<Token> consumer) {
-        var state = new Stack<Token>();
         if (!peek().is(start)) {
             throw new ParseException("unexpected start of expression", peek());
         }
 
+        var depth = 0;
         while (isNotEmpty()) {
             var next = take();
             if (next.is(start)) {
-                state.push(next);
+                ++depth;
             } else if (next.is(end)) {
-                if (!state.isEmpty()) {
-                    state.pop();
+                if (depth > 0) {
+                    --depth;
                 } else {
                     throw new ParseException("unbalanced expression");
                 }
             }
 
             consumer.accept(next);
-            if (state.isEmpty()) { // balanced expression
+            if (depth == 0) { // balanced expression
                 return;
             }
         }
-        if (!state.isEmpty()) {
+        if (depth > 0) {
             throw new ParseException("unbalanced expression");
         }
     }
 
     /**
      * Take an entire expression denoted by start and end tokens from the head of the stream, optionally including those
-     * enclosing tokens.
+     * enclosing tokens. The result only holds the semantic tokens of the expression, and is a view over this stream's
+     * tokens where possible rather than a copy.
      */
     public TokenStream take(Token.Type start, Token.Type end, boolean preserveEnclosing) {
-        var inner = new ArrayList<Token>();
-        walkExpression(start, end, inner::add);
-        if (!preserveEnclosing) {
-            inner.remove(0);
-            inner.remove(inner.size() - 1);
+        if (!isIndexed()) { // the expression has to be buffered from the source either way
+            var inner = new ArrayList<Token>();
+            walkExpression(start, end, inner::add);
+            var stream = new TokenStream(inner, true);
+            return preserveEnclosing ? stream : stream.slice(1, inner.size() - 1);
+        }
+
+        if (!peek().is(start)) {
+            throw new ParseException("unexpected start of expression", peek());
         }
-        return new TokenStream(inner);
+        var from = next;
+        var to = closingPosition(from, start, end);
+        advanceTo(tokenIndex(to) + 1);
+        return preserveEnclosing ? slice(from, to + 1) : slice(from + 1, to);
     }
 
     /**
@@ -192,31 +365,28 @@ public class TokenStream {
      */
     public List<TokenStream> takeArgList() {
         var args = new ArrayList<TokenStream>();
-        var current = new ArrayList<Token>();
         var expr = take(Token.Type.EXPR_START, Token.Type.EXPR_END);
-        while (expr.isNotEmpty()) {
-            var head = expr.peek();
+        var size = expr.tokens.size();
+        var argStart = 0;
+        for (var i = 0; i < size; ) {
+            var head = expr.tokens.get(i);
             if (head.is(Token.Type.COMMA)) {
-                if (current.isEmpty()) {
+                if (i == argStart) {
                     throw new ParseException("empty argument");
-                } else {
-                    args.add(new TokenStream(current));
-                    current = new ArrayList<>();
-                    expr.take();
                 }
+                args.add(expr.slice(argStart, i));
+                argStart = ++i;
             } else if (head.is(Token.Type.EXPR_START)) {
-                var nestedExpr = expr.take(Token.Type.EXPR_START, Token.Type.EXPR_END, true);
-                current.addAll(nestedExpr.getTokens());
+                i = expr.closingPosition(i, Token.Type.EXPR_START, Token.Type.EXPR_END) + 1;
             } else if (head.is(Token.Type.LIST_START)) {
-                var nestedExpr = expr.take(Token.Type.LIST_START, Token.Type.LIST_END, true);
-                current.addAll(nestedExpr.getTokens());
+                i = expr.closingPosition(i, Token.Type.LIST_START, Token.Type.LIST_END) + 1;
             } else {
-                current.add(expr.take());
+                ++i;
             }
         }
 
-        if (!current.isEmpty()) {
-            args.add(new TokenStream(current));
+        if (argStart < size) {
+            args.add(expr.slice(argStart, size));
         }
         return args;
     }
@@ -269,14 +439,80 @@ public class TokenStream {
     }
 
     public boolean isNotEmpty() { // this doesn't _currently_ need a version that checks non-semantic
-        for (int i = index; i < tokens.size(); i++) {
-            if (tokens.get(i).isSemantic()) return true;
-        }
-        return false;
+        return nextSemantic() > -1;
     }
 
     @Override
     public String toString() {
+        fill();
         return tokens.stream().map(Token::getValue).collect(Collectors.joining(""));
     }
-}
\ No newline at end of file
+
+    // the tokens at the given semantic positions [from, to) of a list, or at those indices if there's no position index
+    private static final class SemanticSlice extends AbstractList<Token> implements RandomAccess {
+        private final List<Token> tokens;
+        private final int[] semantic;
+        private final int from;
+        private final int to;
+
+        SemanticSlice(List<Token> tokens, int[] semantic, int from, int to) {
+            this.tokens = tokens;
+            this.semantic = semantic;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Token get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return tokens.get(semantic != null ? semantic[from + index] : from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    private static final class ConcatList extends AbstractList<Token> implements RandomAccess {
+        private final List<List<Token>> parts;
+        private final int[] offsets; // offsets[i] is the index of the first token of parts[i]
+        private final int size;
+
+        ConcatList(List<List<Token>> parts) {
+            this.parts = parts;
+            this.offsets = new int[parts.size()];
+            var size = 0;
+            for (var i = 0; i < parts.size(); ++i) {
+                offsets[i] = size;
+                size += parts.get(i).size();
+            }
+            this.size = size;
+        }
+
+        @Override
+        public Token get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            // rightmost part starting at or before index, which skips over any empty parts sharing that offset
+            var i = Arrays.binarySearch(offsets, index);
+            if (i < 0) {
+                i = -(i + 1) - 1;
+            } else {
+                while (i + 1 < offsets.length && offsets[i + 1] == index) {
+                    ++i;
+                }
+            }
+            return parts.get(i).get(index - offsets[i]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
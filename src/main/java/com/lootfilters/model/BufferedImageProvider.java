@@ -3,6 +3,7 @@ package com.lootfilters.model;
 import com.lootfilters.LootFiltersPlugin;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.util.ImageUtil;
@@ -19,6 +20,7 @@ public abstract class BufferedImageProvider {
 
     public abstract CacheKey getCacheKey(PluginTileItem item, int... height);
 
+    @Getter
     @AllArgsConstructor
     @EqualsAndHashCode(callSuper = false)
     public static final class Sprite extends BufferedImageProvider {
@@ -41,6 +43,7 @@ public abstract class BufferedImageProvider {
         }
     }
 
+    @Getter
     @AllArgsConstructor
     @EqualsAndHashCode(callSuper = false)
     public static final class Item extends BufferedImageProvider {
@@ -59,6 +62,7 @@ public abstract class BufferedImageProvider {
         }
     }
 
+    @Getter
     @AllArgsConstructor
     @EqualsAndHashCode(callSuper = false)
     public static final class File extends BufferedImageProvider {
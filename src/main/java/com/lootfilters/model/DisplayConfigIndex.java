@@ -1,7 +1,6 @@
 package com.lootfilters.model;
 
 import com.lootfilters.DisplayConfig;
-import com.lootfilters.LootFiltersPlugin;
 import lombok.NonNull;
 import net.runelite.api.WorldView;
 
@@ -36,14 +35,4 @@ public class DisplayConfigIndex {
     public void clear() {
         index.clear();
     }
-
-    public void reset(LootFiltersPlugin plugin) {
-        clear();
-        for (var entry : plugin.getTileItemIndex().entrySet()) {
-            for (var item : entry.getValue()) {
-                var match = plugin.getActiveFilter().findMatch(plugin, item);
-                index.put(item, match);
-            }
-        }
-    }
 }
@@ -56,18 +56,6 @@ public class IconIndex {
         index.clear();
     }
 
-    public void reset(LootFiltersPlugin plugin) {
-        clear();
-        for (var entry : plugin.getTileItemIndex().entrySet()) {
-            for (var item : entry.getValue()) {
-                var match = plugin.getActiveFilter().findMatch(plugin, item);
-                if (match != null && match.getIcon() != null) {
-                    inc(plugin, match.getIcon(), item, match.isCompact() ? plugin.getConfig().compactRenderSize() : 16);
-                }
-            }
-        }
-    }
-
     @RequiredArgsConstructor
     private static final class CacheEntry {
         final BufferedImage image;
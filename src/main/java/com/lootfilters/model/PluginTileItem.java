@@ -9,10 +9,12 @@ import net.runelite.api.TileItem;
 import net.runelite.api.coords.WorldPoint;
 
 import java.time.Instant;
+import java.util.Locale;
 
 public class PluginTileItem {
-    private final TileItem item;
+    @Getter private final TileItem item;
     @Getter private final String name;
+    @Getter private final String lowercaseName;
     private final int gePrice;
     @Getter private final int haPrice;
     @Getter private final WorldPoint worldPoint;
@@ -33,6 +35,7 @@ public class PluginTileItem {
 
         this.item = item;
         this.name = composition.getName();
+        this.lowercaseName = name.toLowerCase(Locale.ROOT);
         this.gePrice = plugin.getItemManager().getItemPrice(item.getId());
         this.haPrice = composition.getHaPrice();
         this.worldPoint = WorldPoint.fromLocalInstance(plugin.getClient(), tile.getLocalLocation());
@@ -45,6 +48,24 @@ public class PluginTileItem {
         this.worldView = tile.getItemLayer().getWorldView().getId();
     }
 
+    // for tests, which have no client or item manager to look an item up in
+    public PluginTileItem(TileItem item, String name, int gePrice, int haPrice, WorldPoint worldPoint,
+                          boolean isStackable, boolean isNoted, boolean isTradeable) {
+        this.item = item;
+        this.name = name;
+        this.lowercaseName = name.toLowerCase(Locale.ROOT);
+        this.gePrice = gePrice;
+        this.haPrice = haPrice;
+        this.worldPoint = worldPoint;
+        this.spawnTime = 0;
+        this.despawnInstant = null;
+        this.isStackable = isStackable;
+        this.isNoted = isNoted;
+        this.isTradeable = isTradeable;
+        this.tile = null;
+        this.worldView = -1;
+    }
+
     public int getGePrice() {
         switch (getId()) {
             case ItemID.COINS:
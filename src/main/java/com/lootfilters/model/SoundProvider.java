@@ -5,6 +5,7 @@ import com.lootfilters.lang.ParseException;
 import com.lootfilters.lang.Token;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -22,6 +23,7 @@ public abstract class SoundProvider {
         }
     }
 
+    @Getter
     @AllArgsConstructor
     @EqualsAndHashCode(callSuper = false)
     public static final class SoundEffect extends SoundProvider {
@@ -41,6 +43,7 @@ public abstract class SoundProvider {
         }
     }
 
+    @Getter
     @AllArgsConstructor
     @EqualsAndHashCode(callSuper = false)
     public static final class File extends SoundProvider {
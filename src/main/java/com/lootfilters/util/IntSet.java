@@ -0,0 +1,70 @@
+package com.lootfilters.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * IntSet is an immutable set of primitive ints. Small sets are a sorted array that is binary searched, larger ones
+ * switch to open addressing with linear probing.
+ */
+public final class IntSet {
+    private static final int MAX_SORTED_SIZE = 16;
+    private static final int EMPTY_SLOT = 0; // 0 itself is tracked separately since it marks an empty slot
+
+    private final int[] sorted;
+    private final int[] table;
+    private final boolean containsZero;
+
+    private IntSet(int[] sorted, int[] table, boolean containsZero) {
+        this.sorted = sorted;
+        this.table = table;
+        this.containsZero = containsZero;
+    }
+
+    public static IntSet of(Collection<Integer> values) {
+        var distinct = values.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        if (distinct.length <= MAX_SORTED_SIZE) {
+            return new IntSet(distinct, null, false);
+        }
+
+        // keep the table at most half full so probe sequences stay short
+        var table = new int[Integer.highestOneBit(distinct.length) << 2];
+        var containsZero = false;
+        for (var value : distinct) {
+            if (value == EMPTY_SLOT) {
+                containsZero = true;
+                continue;
+            }
+
+            var i = slot(value, table.length);
+            while (table[i] != EMPTY_SLOT) {
+                i = (i + 1) & (table.length - 1);
+            }
+            table[i] = value;
+        }
+        return new IntSet(null, table, containsZero);
+    }
+
+    public boolean contains(int value) {
+        if (sorted != null) {
+            return Arrays.binarySearch(sorted, value) >= 0;
+        }
+        if (value == EMPTY_SLOT) {
+            return containsZero;
+        }
+
+        var i = slot(value, table.length);
+        while (table[i] != EMPTY_SLOT) {
+            if (table[i] == value) {
+                return true;
+            }
+            i = (i + 1) & (table.length - 1);
+        }
+        return false;
+    }
+
+    private static int slot(int value, int size) {
+        var hash = value * 0x9e3779b9; // spread sequential ids across the table
+        return (hash ^ (hash >>> 16)) & (size - 1);
+    }
+}
@@ -0,0 +1,110 @@
+package com.lootfilters.util;
+
+import java.util.Arrays;
+
+/**
+ * LongMap is a map from primitive longs to objects, using open addressing with linear probing so that neither keys nor
+ * entries are boxed. Null values aren't supported, a null value marks an empty slot.
+ */
+public final class LongMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        var i = slot(key, keys.length);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+            i = (i + 1) & (keys.length - 1);
+        }
+        return null;
+    }
+
+    public void put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null value");
+        }
+
+        // keep the table at most half full so probe sequences stay short
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+
+        var i = slot(key, keys.length);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & (keys.length - 1);
+        }
+        keys[i] = key;
+        values[i] = value;
+        ++size;
+    }
+
+    public void remove(long key) {
+        var i = slot(key, keys.length);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                values[i] = null;
+                --size;
+                closeGap(i);
+                return;
+            }
+            i = (i + 1) & (keys.length - 1);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // shifts back any entry after an emptied slot that would no longer be reachable from where it hashes to
+    private void closeGap(int gap) {
+        var mask = keys.length - 1;
+        for (var i = (gap + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            var home = slot(keys[i], keys.length);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                values[i] = null;
+                gap = i;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        for (var i = 0; i < oldKeys.length; ++i) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+
+            var j = slot(oldKeys[i], capacity);
+            while (values[j] != null) {
+                j = (j + 1) & (capacity - 1);
+            }
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    private static int slot(long key, int capacity) {
+        var hash = key * 0x9e3779b97f4a7c15L; // spread packed coordinates across the table
+        return (int) (hash >>> 32) & (capacity - 1);
+    }
+}
@@ -0,0 +1,167 @@
+package com.lootfilters.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static com.lootfilters.util.TextUtil.isInfixWildcard;
+
+/**
+ * NameMatcher is a precompiled list of item name patterns. Every pattern is classified and lowercased once up front:
+ * <ul>
+ *     <li>{@code *} matches everything</li>
+ *     <li>{@code *foo*} matches names containing foo</li>
+ *     <li>{@code *foo} matches names ending with foo</li>
+ *     <li>{@code foo*} matches names starting with foo</li>
+ *     <li>{@code foo*bar} matches names starting with foo and ending with bar</li>
+ *     <li>anything else matches the name exactly, ignoring case</li>
+ * </ul>
+ * Exact names are kept in a hash set and prefix, suffix and contains patterns are each merged into a trie, so a match
+ * costs one walk of the name per pattern type regardless of how many patterns there are.
+ */
+public final class NameMatcher {
+    private final boolean matchAll;
+    private final Set<String> exact;
+    private final Trie prefixes;
+    private final Trie suffixes; // stored reversed
+    private final Trie infixes; // "contains", walked from every offset
+    private final String[][] affixes; // foo*bar as {foo, bar}
+
+    private NameMatcher(boolean matchAll, Set<String> exact, Trie prefixes, Trie suffixes, Trie infixes,
+                        String[][] affixes) {
+        this.matchAll = matchAll;
+        this.exact = exact;
+        this.prefixes = prefixes;
+        this.suffixes = suffixes;
+        this.infixes = infixes;
+        this.affixes = affixes;
+    }
+
+    public static NameMatcher compile(List<String> patterns) {
+        var matchAll = false;
+        var exact = new HashSet<String>();
+        var prefixes = new Trie();
+        var suffixes = new Trie();
+        var infixes = new Trie();
+        var affixes = new ArrayList<String[]>();
+        for (var pattern : patterns) {
+            var target = pattern.toLowerCase(Locale.ROOT);
+            if (target.equals("*")) {
+                matchAll = true;
+            } else if (target.startsWith("*") && target.endsWith("*")) {
+                infixes.add(target.substring(1, target.length() - 1));
+            } else if (target.startsWith("*")) {
+                suffixes.add(new StringBuilder(target.substring(1)).reverse().toString());
+            } else if (target.endsWith("*")) {
+                prefixes.add(target.substring(0, target.length() - 1));
+            } else if (isInfixWildcard(target)) {
+                var index = target.indexOf('*');
+                affixes.add(new String[]{target.substring(0, index), target.substring(index + 1)});
+            } else {
+                exact.add(target);
+            }
+        }
+        return new NameMatcher(matchAll, exact, prefixes, suffixes, infixes, affixes.toArray(String[][]::new));
+    }
+
+    /**
+     * @param name The item name, which must already be lowercased.
+     */
+    public boolean matches(String name) {
+        if (matchAll || exact.contains(name)) {
+            return true;
+        }
+        if (prefixes.matchesAt(name, 0, false) || suffixes.matchesAt(name, name.length() - 1, true)) {
+            return true;
+        }
+        if (!infixes.isEmpty()) {
+            for (var i = 0; i <= name.length(); ++i) {
+                if (infixes.matchesAt(name, i, false)) {
+                    return true;
+                }
+            }
+        }
+        for (var affix : affixes) {
+            if (name.startsWith(affix[0]) && name.endsWith(affix[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Trie {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Trie[] NO_CHILDREN = new Trie[0];
+
+        // sorted, so that lookups can binary search
+        private char[] keys = NO_KEYS;
+        private Trie[] children = NO_CHILDREN;
+        private boolean terminal;
+
+        void add(String word) {
+            var node = this;
+            for (var i = 0; i < word.length(); ++i) {
+                node = node.getOrAddChild(word.charAt(i));
+            }
+            node.terminal = true;
+        }
+
+        boolean isEmpty() {
+            return !terminal && keys.length == 0;
+        }
+
+        // whether any word in the trie reads out of str starting at the given offset, walking backwards if reverse
+        boolean matchesAt(String str, int offset, boolean reverse) {
+            var node = this;
+            for (var i = offset; ; i += reverse ? -1 : 1) {
+                if (node.terminal) {
+                    return true;
+                }
+                if (i < 0 || i >= str.length()) {
+                    return false;
+                }
+                node = node.getChild(str.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+        }
+
+        private Trie getChild(char c) {
+            var index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Trie getOrAddChild(char c) {
+            var index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            var at = -(index + 1);
+            var child = new Trie();
+            keys = insert(keys, at, c);
+            children = insert(children, at, child);
+            return child;
+        }
+
+        private static char[] insert(char[] arr, int at, char value) {
+            var result = new char[arr.length + 1];
+            System.arraycopy(arr, 0, result, 0, at);
+            result[at] = value;
+            System.arraycopy(arr, at, result, at + 1, arr.length - at);
+            return result;
+        }
+
+        private static Trie[] insert(Trie[] arr, int at, Trie value) {
+            var result = new Trie[arr.length + 1];
+            System.arraycopy(arr, 0, result, 0, at);
+            result[at] = value;
+            System.arraycopy(arr, at, result, at + 1, arr.length - at);
+            return result;
+        }
+    }
+}
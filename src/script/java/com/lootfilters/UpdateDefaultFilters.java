@@ -2,7 +2,9 @@ package com.lootfilters;
 
 import java.io.FileOutputStream;
 import java.net.URL;
-import java.util.zip.GZIPOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.lootfilters.util.TextUtil.normalizeCrlf;
 
 public class UpdateDefaultFilters {
 	public static void main(String[] args) throws Exception {
@@ -14,14 +16,12 @@ public class UpdateDefaultFilters {
 	private static void updateDefaultFilter(DefaultFilter filter) throws Exception {
 		var url = new URL(filter.getUrl());
 		try (var stream = url.openStream()) {
-			var src = new String(stream.readAllBytes());
+			// stored uncompressed (the jar is compressed already) and with normalized line endings
+			var src = normalizeCrlf(new String(stream.readAllBytes(), StandardCharsets.UTF_8));
 			LootFilter.fromSource(filter.getName(), src);
 
-			try (
-				var inner = new FileOutputStream("src/main/resources/com/lootfilters/" + filter.getFilename());
-				var writer = new GZIPOutputStream(inner)
-			) {
-				writer.write(src.getBytes());
+			try (var writer = new FileOutputStream("src/main/resources/com/lootfilters/" + filter.getFilename())) {
+				writer.write(src.getBytes(StandardCharsets.UTF_8));
 			}
 		}
 	}
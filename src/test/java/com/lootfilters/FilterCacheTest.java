@@ -0,0 +1,65 @@
+package com.lootfilters;
+
+import com.lootfilters.lang.Sources;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class FilterCacheTest {
+    @Test
+    public void testRoundTripDefaultFilters() throws Exception {
+        for (var defaultFilter : DefaultFilter.all()) {
+            var src = Sources.loadScriptResource(DefaultFilter.class, defaultFilter.getFilename());
+            var filter = LootFilter.fromSource(defaultFilter.getName(), src);
+
+            var bytes = new ByteArrayOutputStream();
+            try (var out = new DataOutputStream(bytes)) {
+                FilterCache.writeFilter(out, filter);
+            }
+            assertEquals(defaultFilter.getName(), filter, read(bytes.toByteArray()));
+        }
+    }
+
+    @Test(expected = FilterCache.FormatException.class)
+    public void testOrdinalOutOfRange() throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            writeHeader(out);
+            out.writeByte(10); // quantity
+            out.writeInt(5);
+            out.writeByte(99); // comparator
+        }
+        read(bytes.toByteArray());
+    }
+
+    @Test(expected = FilterCache.FormatException.class)
+    public void testUnrecognizedTag() throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            writeHeader(out);
+            out.writeByte(99);
+        }
+        read(bytes.toByteArray());
+    }
+
+    // a filter with no name, filename or description and a single rule
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(FilterCache.FORMAT_VERSION);
+        out.writeInt(-1);
+        out.writeInt(-1);
+        out.writeInt(-1);
+        out.writeInt(1);
+    }
+
+    private static LootFilter read(byte[] bytes) throws IOException {
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return FilterCache.readFilter(in);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.lootfilters;
+
+import com.lootfilters.lang.CompileException;
+import com.lootfilters.lang.Sources;
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalCompilerTest {
+    private static final Pattern RULE_START = Pattern.compile("(?m)^(if|rule|apply) \\(");
+
+    private static final String SOURCE = String.join("\n",
+            "meta { name = \"test\"; }",
+            "#define RED \"#ffff0000\"",
+            "if (name:\"Coins\") { color = RED; }",
+            "if (value:>1000) { color = \"#ff00ff00\"; }",
+            "apply (noted:true) { showValue = true; }",
+            "");
+
+    @Test
+    public void testEditOneBlock() throws Exception {
+        var compiler = new IncrementalCompiler();
+        assertEquals(LootFilter.fromSource("test", SOURCE), compiler.compile("test", SOURCE));
+
+        var edited = SOURCE.replace("value:>1000", "value:>5000 && quantity:>1");
+        assertEquals(LootFilter.fromSource("test", edited), compiler.compile("test", edited));
+    }
+
+    @Test
+    public void testEditOneBlockDefaultFilters() throws Exception {
+        for (var defaultFilter : DefaultFilter.all()) {
+            var src = Sources.loadScriptResource(DefaultFilter.class, defaultFilter.getFilename());
+            var compiler = new IncrementalCompiler();
+            compiler.compile(defaultFilter.getName(), src);
+
+            // narrow whichever rule comes first past the middle of the file
+            var rule = RULE_START.matcher(src);
+            assertTrue(defaultFilter.getName(), rule.find(src.length() / 2));
+            var edited = src.substring(0, rule.end()) + "quantity:>5 && " + src.substring(rule.end());
+            assertEquals(defaultFilter.getName(),
+                    LootFilter.fromSource(defaultFilter.getName(), edited),
+                    compiler.compile(defaultFilter.getName(), edited));
+        }
+    }
+
+    @Test
+    public void testMacroSpanningBlocks() throws Exception {
+        var src = String.join("\n",
+                "#define OPEN if (name:\"Coins\") {",
+                "OPEN color = \"#ffff0000\"; }",
+                "if (value:>1000) { color = \"#ff00ff00\"; }",
+                "");
+        assertEquals(LootFilter.fromSource("test", src), new IncrementalCompiler().compile("test", src));
+    }
+
+    @Test(expected = CompileException.class)
+    public void testCompileErrorPropagates() throws Exception {
+        var compiler = new IncrementalCompiler();
+        compiler.compile("test", SOURCE);
+        compiler.compile("test", SOURCE.replace("value:>1000", "value:>"));
+    }
+}
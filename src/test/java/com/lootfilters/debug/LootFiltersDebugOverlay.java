@@ -1,8 +1,12 @@
 package com.lootfilters.debug;
 
 import com.lootfilters.LootbeamIndex;
+import com.lootfilters.MatchCache;
 import com.lootfilters.TileItemIndex;
 import com.lootfilters.model.DisplayConfigIndex;
+import com.lootfilters.model.PluginTileItem;
+import net.runelite.api.Client;
+import net.runelite.api.Tile;
 import net.runelite.client.ui.overlay.Overlay;
 import net.runelite.client.ui.overlay.OverlayLayer;
 import net.runelite.client.ui.overlay.OverlayPosition;
@@ -11,26 +15,36 @@ import javax.inject.Inject;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.util.List;
+import java.util.Map;
+
+import static com.lootfilters.TileItemIndex.MAX_RENDER_DISTANCE;
 
 public class LootFiltersDebugOverlay extends Overlay {
     private static final Color DEBUG_BG = new Color(0, 0, 0, 0x80);
 
+    private final Client client;
     private final LootFiltersDebugConfig config;
     private final TileItemIndex tileItemIndex;
     private final DisplayConfigIndex displayConfigIndex;
     private final LootbeamIndex lootbeamIndex;
+    private final MatchCache matchCache;
 
     @Inject
     public LootFiltersDebugOverlay(
+            Client client,
             LootFiltersDebugConfig config,
             TileItemIndex tileItemIndex,
             DisplayConfigIndex displayConfigIndex,
-            LootbeamIndex lootbeamIndex
+            LootbeamIndex lootbeamIndex,
+            MatchCache matchCache
     ) {
+        this.client = client;
         this.config = config;
         this.tileItemIndex = tileItemIndex;
         this.displayConfigIndex = displayConfigIndex;
         this.lootbeamIndex = lootbeamIndex;
+        this.matchCache = matchCache;
 
         setPosition(OverlayPosition.DYNAMIC);
         setLayer(OverlayLayer.ABOVE_WIDGETS);
@@ -43,8 +57,12 @@ public class LootFiltersDebugOverlay extends Overlay {
         }
 
         int itemCount = 0;
-        int screenY = 96;
-        for (var entry : tileItemIndex.entrySet()) {
+        int screenY = 112;
+        var player = client.getLocalPlayer();
+        var inRange = player != null
+                ? tileItemIndex.findInRange(player.getLocalLocation(), MAX_RENDER_DISTANCE)
+                : List.<Map.Entry<Tile, List<PluginTileItem>>>of();
+        for (var entry : inRange) {
             var tile = entry.getKey();
             var items = entry.getValue();
 
@@ -69,11 +87,12 @@ public class LootFiltersDebugOverlay extends Overlay {
             screenY += 16;
         }
         g.setColor(DEBUG_BG);
-        g.fillRect(0, 18, 96, 64);
+        g.fillRect(0, 18, 96, 80);
         g.setColor(Color.WHITE);
-        g.drawString("items: " + itemCount + "," + tileItemIndex.pointIndexSize(), 0, 32);
+        g.drawString("items: " + itemCount + "," + tileItemIndex.entrySet().size() + "," + tileItemIndex.gridSize(), 0, 32);
         g.drawString("displays: " + displayConfigIndex.size(), 0, 64);
         g.drawString("lootbeams: " + lootbeamIndex.size(), 0, 48);
+        g.drawString("matches: " + matchCache.size() + "," + Math.round(matchCache.getHitRate() * 100) + "%", 0, 80);
 
         return null;
     }
@@ -0,0 +1,170 @@
+package com.lootfilters.lang;
+
+import com.lootfilters.DefaultFilter;
+import com.lootfilters.FilterRule;
+import com.lootfilters.LootFilter;
+import com.lootfilters.ast.AndCondition;
+import com.lootfilters.ast.CompiledCondition;
+import com.lootfilters.ast.Condition;
+import com.lootfilters.ast.OrCondition;
+import com.lootfilters.ast.leaf.ItemNameCondition;
+import com.lootfilters.ast.leaf.ItemNotedCondition;
+import com.lootfilters.ast.leaf.ItemQuantityCondition;
+import com.lootfilters.ast.leaf.ItemValueCondition;
+import com.lootfilters.model.PluginTileItem;
+import net.runelite.api.TileItem;
+import net.runelite.api.coords.WorldPoint;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OptimizerTest {
+    private static final List<PluginTileItem> ITEMS = List.of(
+            item(995, "Coins", 25000, 1, 0, true, false, true),
+            item(995, "Coins", 50, 1, 0, true, false, true),
+            item(385, "Shark", 1, 900, 300, false, false, true),
+            item(386, "Shark", 250, 900, 300, true, true, true),
+            item(379, "Lobster", 3, 150, 100, false, false, true),
+            item(536, "Dragon bones", 1, 2800, 1, false, false, true),
+            item(4587, "Dragon scimitar", 1, 60000, 72000, false, false, true),
+            item(526, "Bones", 1, 100, 1, false, false, true),
+            item(12934, "Zulrah's scales", 500, 150, 0, true, false, true),
+            item(1, "Toolkit", 1, 0, 0, false, false, false));
+
+    @Test
+    public void testConstantFolding() {
+        assertEquals(new ItemNameCondition("Coins"), optimizeCond("true && name:\"Coins\""));
+        assertEquals(new ItemNameCondition("Coins"), optimizeCond("false || name:\"Coins\""));
+        assertEquals(new ItemNameCondition("Coins"), optimizeCond("!false && (name:\"Coins\" || false)"));
+        assertEquivalent("apply (true && name:\"Coins\") { showValue = true; }\n"
+                + "apply (false || quantity:>100) { color = \"#ff00ff00\"; }\n"
+                + "apply (name:\"Shark\" || true) { borderColor = \"#ffffffff\"; }\n");
+    }
+
+    @Test
+    public void testFlattening() {
+        var cond = optimizeCond("noted:true && (quantity:>5 && (tradeable:true && stackable:true))");
+        assertTrue(cond instanceof AndCondition);
+        assertEquals(4, ((AndCondition) cond).getRules().size());
+        assertEquivalent("apply (noted:true && (quantity:>5 && (tradeable:true && stackable:true))) { color = \"#ffff0000\"; }\n"
+                + "apply (name:\"Lobster\" || (name:\"Bones\" || (noted:true || quantity:>1000))) { showValue = true; }\n"
+                + "apply ((name:\"Shark\")) { borderColor = \"#ffffffff\"; }\n");
+    }
+
+    @Test
+    public void testDoubleNegation() {
+        assertEquals(new ItemNotedCondition(true), optimizeCond("!!noted:true"));
+        assertEquals(new ItemNotedCondition(true), optimizeCond("!!!!noted:true"));
+        assertEquivalent("apply (!!noted:true) { color = \"#ffff0000\"; }\n"
+                + "apply (!!!stackable:true) { showValue = true; }\n"
+                + "apply (!(!name:\"Coins\" || !quantity:>100)) { borderColor = \"#ffffffff\"; }\n");
+    }
+
+    @Test
+    public void testDedup() {
+        assertEquals(new ItemNameCondition("Shark"), optimizeCond("name:\"Shark\" && name:\"Shark\""));
+        var cond = optimizeCond("name:\"Shark\" || (name:\"Lobster\" || name:\"Shark\")");
+        assertEquals(2, ((OrCondition) cond).getRules().size());
+        assertEquivalent("apply (name:\"Shark\" || (name:\"Lobster\" || name:\"Shark\")) { color = \"#ffff0000\"; }\n"
+                + "apply (name:\"Dragon*\" && name:\"Dragon*\" && value:>1000) { showValue = true; }\n");
+    }
+
+    @Test
+    public void testDropFalseRules() {
+        var src = "rule (name:\"Coins\" && false) { hidden = true; }\n"
+                + "rule (!true) { hidden = true; }\n"
+                + "apply (false) { showValue = true; }\n"
+                + "rule (name:\"Coins\") { color = \"#ffffff00\"; }\n"
+                + "apply (true) { showValue = true; }\n";
+        var optimized = new Optimizer(parse(src)).optimize();
+        assertEquals(2, optimized.getRules().size());
+        assertEquals(4, optimized.getRules().get(0).getSourceLine());
+        assertTrue(optimized.getRules().get(0).isTerminal());
+        assertEquivalent(src);
+    }
+
+    @Test
+    public void testCostSort() {
+        var cond = optimizeCond("name:\"Dragon*\" && value:>1000 && name:\"Shark\" && quantity:>5");
+        var rules = ((AndCondition) cond).getRules();
+        assertTrue(rules.get(0) instanceof ItemQuantityCondition);
+        assertEquals(new ItemNameCondition("Shark"), rules.get(1));
+        assertTrue(rules.get(2) instanceof ItemValueCondition);
+        assertEquals(new ItemNameCondition("Dragon*"), rules.get(3));
+        assertEquivalent("apply (name:\"Dragon*\" && value:>1000 && name:\"Shark\" && quantity:>5) { color = \"#ffff0000\"; }\n"
+                + "rule (value:>1000 || name:\"*bones\" || id:995) { showValue = true; }\n"
+                + "apply (tradeable:false) { hidden = true; }\n");
+    }
+
+    @Test
+    public void testDefaultFilters() throws Exception {
+        for (var defaultFilter : DefaultFilter.all()) {
+            // accountType reads a varbit off the client, which there isn't one of here
+            var src = Sources.loadScriptResource(DefaultFilter.class, defaultFilter.getFilename())
+                    .replaceAll("accountType:\\w+", "true");
+            var tokens = TokenStream.concat(List.of(
+                    new Lexer("preamble", Sources.getPreamble()).tokenize(),
+                    new Lexer(defaultFilter.getName(), src).tokenize()));
+            assertEquivalent(new Parser(new Preprocessor(tokens).preprocess()).parse());
+        }
+    }
+
+    private static Condition optimizeCond(String cond) {
+        var rules = new Optimizer(parse("apply (" + cond + ") { showValue = true; }\n")).optimize().getRules();
+        assertEquals(1, rules.size());
+        return rules.get(0).getCond();
+    }
+
+    private static void assertEquivalent(String src) {
+        assertEquivalent(parse(src));
+    }
+
+    private static void assertEquivalent(LootFilter parsed) {
+        var optimized = new Optimizer(parsed).optimize();
+        for (var item : ITEMS) {
+            assertEquals(item.getName() + " x" + item.getQuantity(), evaluate(parsed, item), evaluate(optimized, item));
+        }
+    }
+
+    // the source lines of the rules that match, in the same order findMatch applies them
+    private static List<Integer> evaluate(LootFilter filter, PluginTileItem item) {
+        var matched = new ArrayList<Integer>();
+        for (FilterRule rule : filter.getRules()) {
+            if (!CompiledCondition.compile(rule.getCond()).test(null, item)) {
+                continue;
+            }
+
+            matched.add(rule.getSourceLine());
+            if (rule.isTerminal()) {
+                break;
+            }
+        }
+        return matched;
+    }
+
+    private static LootFilter parse(String src) {
+        var tokens = new Lexer("test", src).tokenize();
+        return new Parser(new Preprocessor(tokens).preprocess()).parse();
+    }
+
+    private static PluginTileItem item(int id, String name, int quantity, int gePrice, int haPrice,
+                                       boolean isStackable, boolean isNoted, boolean isTradeable) {
+        var tileItem = (TileItem) Proxy.newProxyInstance(TileItem.class.getClassLoader(), new Class<?>[]{TileItem.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getId": return id;
+                        case "getQuantity": return quantity;
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        default: return method.getReturnType() == int.class ? 0 : null;
+                    }
+                });
+        return new PluginTileItem(tileItem, name, gePrice, haPrice, new WorldPoint(3200, 3200, 0),
+                isStackable, isNoted, isTradeable);
+    }
+}
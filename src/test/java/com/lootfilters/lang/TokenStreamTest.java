@@ -0,0 +1,151 @@
+package com.lootfilters.lang;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TokenStreamTest {
+    @Test
+    public void testTakeArgList() {
+        var src = "( a ,(b, c) , [1, 2],f(x, (y)) ,\n  \"s\" // trailing\n) rest";
+        for (var stream : List.of(listBacked(src), sourceBacked(src))) {
+            var args = stream.takeArgList();
+            assertEquals(List.of(
+                    List.of("a"),
+                    List.of("(", "b", ",", "c", ")"),
+                    List.of("[", "1", ",", "2", "]"),
+                    List.of("f", "(", "x", ",", "(", "y", ")", ")"),
+                    List.of("s")
+            ), args.stream().map(TokenStreamTest::values).collect(Collectors.toList()));
+            assertEquals("rest", stream.take().getValue());
+        }
+    }
+
+    @Test
+    public void testTakeArgListNested() {
+        var src = "(outer(inner(a, b), c), d)";
+        for (var stream : List.of(listBacked(src), sourceBacked(src))) {
+            var args = stream.takeArgList();
+            assertEquals(2, args.size());
+            assertEquals(List.of("d"), values(args.get(1)));
+
+            // args are themselves streams, so a nested call's arg list can be taken from one
+            var outer = args.get(0);
+            assertEquals("outer", outer.take().getValue());
+            var inner = outer.takeArgList();
+            assertEquals(List.of(List.of("inner", "(", "a", ",", "b", ")"), List.of("c")),
+                    inner.stream().map(TokenStreamTest::values).collect(Collectors.toList()));
+
+            var innermost = inner.get(0);
+            innermost.take();
+            assertEquals(List.of(List.of("a"), List.of("b")),
+                    innermost.takeArgList().stream().map(TokenStreamTest::values).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testTakeArgListTrailingComma() {
+        var src = "(a, b,)";
+        for (var stream : List.of(listBacked(src), sourceBacked(src))) {
+            assertEquals(2, stream.takeArgList().size());
+        }
+    }
+
+    @Test
+    public void testTakeArgListEmptyArg() {
+        assertThrowsParse(() -> listBacked("(a, , b)").takeArgList());
+        assertThrowsParse(() -> sourceBacked("(a, , b)").takeArgList());
+    }
+
+    @Test
+    public void testTakeArgListUnbalanced() {
+        assertThrowsParse(() -> listBacked("(a, (b, c)").takeArgList());
+        assertThrowsParse(() -> sourceBacked("(a, (b, c)").takeArgList());
+        assertThrowsParse(() -> listBacked("(a, [b, c)").takeArgList());
+        assertThrowsParse(() -> sourceBacked("(a, [b, c)").takeArgList());
+    }
+
+    @Test
+    public void testTakeNested() {
+        var src = "{ a {\n b { } }\n c } d";
+        for (var stream : List.of(listBacked(src), sourceBacked(src))) {
+            var block = stream.take(Token.Type.BLOCK_START, Token.Type.BLOCK_END);
+            assertEquals(List.of("a", "{", "b", "{", "}", "}", "c"), values(block));
+            assertEquals("d", stream.take().getValue());
+
+            block.take();
+            var inner = block.take(Token.Type.BLOCK_START, Token.Type.BLOCK_END, true);
+            assertEquals(List.of("{", "b", "{", "}", "}"), values(inner));
+            assertEquals("c", block.take().getValue());
+        }
+    }
+
+    @Test
+    public void testForkCopyToAfterCompaction() {
+        var src = new StringBuilder();
+        for (var i = 0; i < 3000; ++i) {
+            src.append("t").append(i).append(i % 10 == 9 ? "\n" : " ");
+        }
+
+        // consume past the point where a source-backed stream drops its consumed tokens
+        var stream = sourceBacked(src.toString());
+        for (var i = 0; i < 1500; ++i) {
+            assertEquals("t" + i, stream.take().getValue());
+        }
+
+        var fork = stream.fork();
+        var copied = new ArrayList<Token>();
+        fork.copyTo(copied);
+        var expected = new ArrayList<String>();
+        for (var i = 1500; i < 3000; ++i) {
+            expected.add("t" + i);
+        }
+        assertEquals(expected, copied.stream()
+                .filter(Token::isSemantic)
+                .map(Token::getValue)
+                .collect(Collectors.toList()));
+
+        // the fork is independent of the stream it came from
+        for (var i = 1500; i < 2000; ++i) {
+            assertEquals("t" + i, fork.take().getValue());
+        }
+        assertEquals("t1500", stream.peek().getValue());
+        var rest = new ArrayList<Token>();
+        stream.copyTo(rest);
+        assertEquals(copied, rest);
+    }
+
+    private static TokenStream listBacked(String src) {
+        return new Lexer("test", src + "\n").tokenize();
+    }
+
+    // the same tokens, pulled one at a time the way the preprocessor hands them to the parser
+    private static TokenStream sourceBacked(String src) {
+        var tokens = listBacked(src).getTokens().iterator();
+        return new TokenStream(() -> tokens.hasNext() ? tokens.next() : null);
+    }
+
+    // semantic token values left in the stream, without consuming them
+    private static List<String> values(TokenStream stream) {
+        var fork = stream.fork();
+        var values = new ArrayList<String>();
+        while (fork.isNotEmpty()) {
+            values.add(fork.take().getValue());
+        }
+        return values;
+    }
+
+    private static void assertThrowsParse(Runnable runnable) {
+        try {
+            runnable.run();
+            fail("expected ParseException");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+}